@@ -0,0 +1,63 @@
+#!/usr/bin/env bash
+#
+# Holds many slow downloads open and measures how a fast request behaves meanwhile.
+#
+# With platform threads every slow download pins a Tomcat worker, so once their number reaches
+# server.tomcat.threads.max the fast request queues behind them. With virtual threads it stays fast.
+#
+# Usage: load-test/slow-downloads.sh [base-url] [concurrent-downloads] [rate-per-download]
+# Example: load-test/slow-downloads.sh http://localhost:8080 1000 32k
+
+set -euo pipefail
+
+BASE_URL=${1:-http://localhost:8080}
+DOWNLOADS=${2:-1000}
+RATE=${3:-32k}
+FILE_SIZE_MB=${FILE_SIZE_MB:-4}
+PROBES=${PROBES:-50}
+USERNAME=${USERNAME:-loadtest}
+PASSWORD=${PASSWORD:-LoadTest#2024}
+
+WORK_DIR=$(mktemp -d)
+trap 'kill $(jobs -p) 2>/dev/null || true; rm -rf "$WORK_DIR"' EXIT
+COOKIES="$WORK_DIR/cookies.txt"
+
+curl -s -o /dev/null "$BASE_URL/auth/signup" \
+  --data-urlencode "username=$USERNAME" \
+  --data-urlencode "password=$PASSWORD" \
+  --data-urlencode "matchingPassword=$PASSWORD"
+
+curl -s -o /dev/null -c "$COOKIES" "$BASE_URL/auth/process-signin" \
+  --data-urlencode "username=$USERNAME" \
+  --data-urlencode "password=$PASSWORD"
+
+head -c "$((FILE_SIZE_MB * 1024 * 1024))" /dev/urandom > "$WORK_DIR/payload.bin"
+curl -s -o /dev/null -b "$COOKIES" -e "$BASE_URL/" "$BASE_URL/storage/upload" \
+  -F "path=/" -F "files=@$WORK_DIR/payload.bin"
+
+echo "Starting $DOWNLOADS downloads of ${FILE_SIZE_MB}MB at $RATE/s each"
+
+for ((i = 0; i < DOWNLOADS; i++)); do
+  curl -s -o /dev/null -b "$COOKIES" --limit-rate "$RATE" \
+    -w "%{http_code}\n" "$BASE_URL/storage/download?path=/payload.bin" >> "$WORK_DIR/downloads.txt" &
+done
+
+sleep 5
+echo "Probing the home page $PROBES times while the downloads are running"
+
+for ((i = 0; i < PROBES; i++)); do
+  curl -s -o /dev/null -b "$COOKIES" -m 60 -w "%{time_total}\n" "$BASE_URL/" >> "$WORK_DIR/probes.txt" || echo "60" >> "$WORK_DIR/probes.txt"
+done
+
+sort -n "$WORK_DIR/probes.txt" | awk '
+  { times[NR] = $1 }
+  END {
+    printf "Home page latency: p50 %.3fs, p95 %.3fs, max %.3fs\n",
+      times[int(NR * 0.5) + 1], times[int(NR * 0.95) + 1], times[NR]
+  }'
+
+echo "Waiting for the downloads to finish"
+wait
+
+echo "Download status codes:"
+sort "$WORK_DIR/downloads.txt" | uniq -c
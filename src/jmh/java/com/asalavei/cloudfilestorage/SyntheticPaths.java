@@ -0,0 +1,57 @@
+package com.asalavei.cloudfilestorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Generates realistic, reproducible trees of user-relative paths for benchmarks: nested folders up to six levels
+ * deep named from a small vocabulary, files with common extensions, and explicit folder objects.
+ */
+public final class SyntheticPaths {
+
+    private static final String[] FOLDER_NAMES = {
+            "documents", "photos", "Projects", "2023", "2024", "archive", "invoices", "drafts", "Backups", "music",
+            "travel", "reports", "src", "assets", "old", "shared", "Q1", "Q2", "Q3", "Q4"
+    };
+
+    private static final String[] FILE_NAMES = {
+            "report", "IMG", "invoice", "notes", "Presentation", "budget", "scan", "readme", "backup", "track"
+    };
+
+    private static final String[] EXTENSIONS = {".pdf", ".jpg", ".png", ".docx", ".xlsx", ".txt", ".mp3", ".zip"};
+
+    private SyntheticPaths() {
+    }
+
+    /**
+     * @return {@code count} distinct paths in key order, about a tenth of them folders
+     */
+    public static List<String> generate(int count) {
+        Random random = new Random(42);
+        TreeSet<String> paths = new TreeSet<>();
+
+        while (paths.size() < count) {
+            StringBuilder path = new StringBuilder("/");
+            int depth = random.nextInt(6);
+
+            for (int i = 0; i < depth; i++) {
+                path.append(FOLDER_NAMES[random.nextInt(FOLDER_NAMES.length)]).append('/');
+            }
+
+            if (random.nextInt(10) == 0) {
+                path.append(FOLDER_NAMES[random.nextInt(FOLDER_NAMES.length)]).append('-')
+                        .append(random.nextInt(1000)).append('/');
+            } else {
+                path.append(FILE_NAMES[random.nextInt(FILE_NAMES.length)]).append('_')
+                        .append(random.nextInt(1_000_000))
+                        .append(EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+            }
+
+            paths.add(path.toString());
+        }
+
+        return new ArrayList<>(paths);
+    }
+}
@@ -0,0 +1,53 @@
+package com.asalavei.cloudfilestorage.storage;
+
+import com.asalavei.cloudfilestorage.SyntheticPaths;
+import com.asalavei.cloudfilestorage.util.PathUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting of listing pages, which compares folder flags and paths on every comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SortObjectsBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private List<ObjectResponseDto> shuffledObjects;
+    private List<ObjectResponseDto> objects;
+
+    @Setup
+    public void setUp() {
+        shuffledObjects = new ArrayList<>(SyntheticPaths.generate(size).stream()
+                .map(path -> new ObjectResponseDto(PathUtil.getObjectName(path), path, PathUtil.isFolder(path), null))
+                .toList());
+        Collections.shuffle(shuffledObjects, new Random(42));
+    }
+
+    @Setup(Level.Invocation)
+    public void copyObjects() {
+        objects = new ArrayList<>(shuffledObjects);
+    }
+
+    @Benchmark
+    public List<ObjectResponseDto> sortObjects() {
+        FileStorageService.sortObjects(objects);
+        return objects;
+    }
+}
@@ -0,0 +1,51 @@
+package com.asalavei.cloudfilestorage.storage.search;
+
+import com.asalavei.cloudfilestorage.SyntheticPaths;
+import com.asalavei.cloudfilestorage.util.PathUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search over all paths of a user: the linear filter used without an index, against the search index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"report", "img_12", "q4"})
+    private String query;
+
+    private List<String> paths;
+    private UserSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        paths = SyntheticPaths.generate(size);
+        index = UserSearchIndex.build(paths);
+    }
+
+    @Benchmark
+    public List<String> filter() {
+        return paths.stream()
+                .filter(path -> PathUtil.getObjectName(path).toLowerCase().contains(query))
+                .toList();
+    }
+
+    @Benchmark
+    public List<String> index() {
+        return index.search(query);
+    }
+}
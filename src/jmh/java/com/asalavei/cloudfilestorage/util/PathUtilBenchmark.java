@@ -0,0 +1,59 @@
+package com.asalavei.cloudfilestorage.util;
+
+import com.asalavei.cloudfilestorage.SyntheticPaths;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Path handling applied to every object of a listing or search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PathUtilBenchmark {
+
+    private static final String USER_ROOT = "user-1-files";
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private List<String> paths;
+    private List<String> fullPaths;
+
+    @Setup
+    public void setUp() {
+        paths = SyntheticPaths.generate(size);
+        fullPaths = paths.stream().map(path -> USER_ROOT + path).toList();
+    }
+
+    @Benchmark
+    public void getRelativePath(Blackhole blackhole) {
+        for (String fullPath : fullPaths) {
+            blackhole.consume(PathUtil.getRelativePath(fullPath, USER_ROOT));
+        }
+    }
+
+    @Benchmark
+    public void getParentFolders(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(PathUtil.getParentFolders(path));
+        }
+    }
+
+    @Benchmark
+    public void getObjectName(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(PathUtil.getObjectName(path));
+        }
+    }
+}
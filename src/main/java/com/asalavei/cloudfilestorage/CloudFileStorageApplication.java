@@ -3,9 +3,11 @@ package com.asalavei.cloudfilestorage;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.filter.HiddenHttpMethodFilter;
 
 @SpringBootApplication
+@EnableScheduling
 public class CloudFileStorageApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,129 @@
+package com.asalavei.cloudfilestorage.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializes session values for Redis, with compact forms for the values every session holds.
+ * <p>
+ * The security context of a signed-in user is written as the id and username of its {@link UserPrincipal}, and
+ * the times and numbers Spring Session keeps per session as plain binary numbers. Any other value falls back to
+ * JDK serialization. Each compact form starts with a tag byte that cannot start a JDK serialization stream, so
+ * values written by JDK serialization alone, as in sessions created before this serializer, are still read.
+ * The exception are security contexts holding the earlier {@link UserPrincipal}, which wrapped the whole user
+ * entity: they no longer deserialize and are dropped, so users signed in before the upgrade have to sign in again.
+ */
+@Slf4j
+public class CompactSessionSerializer implements RedisSerializer<Object> {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final byte STRING_TAG = 1;
+    private static final byte LONG_TAG = 2;
+    private static final byte INTEGER_TAG = 3;
+    private static final byte SECURITY_CONTEXT_TAG = 4;
+
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+    @Override
+    public byte[] serialize(Object value) {
+        // removed attributes are written as empty values, which Spring Session reads back as removed
+        if (value == null) {
+            return EMPTY;
+        }
+
+        if (value instanceof String string) {
+            return tag(STRING_TAG, string.getBytes(StandardCharsets.UTF_8));
+        }
+
+        if (value instanceof Long || value instanceof Integer || isUserSecurityContext(value)) {
+            return serializeCompact(value);
+        }
+
+        return jdkSerializer.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+
+        try {
+            return switch (bytes[0]) {
+                case STRING_TAG -> new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+                case LONG_TAG, INTEGER_TAG, SECURITY_CONTEXT_TAG -> deserializeCompact(bytes);
+                default -> jdkSerializer.deserialize(bytes);
+            };
+        } catch (IOException | SerializationException e) {
+            // the value was written by an incompatible version, the session loses it rather than failing requests
+            log.warn("Failed to deserialize session value, dropping it", e);
+            return null;
+        }
+    }
+
+    private static boolean isUserSecurityContext(Object value) {
+        return value.getClass() == SecurityContextImpl.class
+                && ((SecurityContextImpl) value).getAuthentication() instanceof UsernamePasswordAuthenticationToken authentication
+                && authentication.getClass() == UsernamePasswordAuthenticationToken.class
+                && authentication.isAuthenticated()
+                && authentication.getPrincipal() instanceof UserPrincipal;
+    }
+
+    private static byte[] serializeCompact(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            if (value instanceof Long number) {
+                output.writeByte(LONG_TAG);
+                output.writeLong(number);
+            } else if (value instanceof Integer number) {
+                output.writeByte(INTEGER_TAG);
+                output.writeInt(number);
+            } else {
+                UserPrincipal principal = (UserPrincipal) ((SecurityContextImpl) value).getAuthentication().getPrincipal();
+                output.writeByte(SECURITY_CONTEXT_TAG);
+                output.writeLong(principal.getId());
+                output.writeUTF(principal.getUsername());
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Failed to serialize session value", e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static Object deserializeCompact(byte[] bytes) throws IOException {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+            return switch (bytes[0]) {
+                case LONG_TAG -> input.readLong();
+                case INTEGER_TAG -> input.readInt();
+                default -> {
+                    UserPrincipal principal = new UserPrincipal(input.readLong(), input.readUTF());
+                    Authentication authentication =
+                            UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities());
+                    yield new SecurityContextImpl(authentication);
+                }
+            };
+        }
+    }
+
+    private static byte[] tag(byte tag, byte[] content) {
+        byte[] bytes = new byte[content.length + 1];
+        bytes[0] = tag;
+        System.arraycopy(content, 0, bytes, 1, content.length);
+        return bytes;
+    }
+}
@@ -0,0 +1,351 @@
+package com.asalavei.cloudfilestorage.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps recently used sessions in memory in front of the session repository in Redis, for at most
+ * {@code session.near-cache.ttl}. At most {@code session.near-cache.max-size} sessions are kept, evicted in least
+ * recently used order.
+ * <p>
+ * Sessions are cached with their attributes in serialized form, so every request gets its own copy of them. A copy
+ * is written back only if its attributes changed or its last access time has not been written for
+ * {@code session.near-cache.last-access-write-interval}; the session expires in Redis that much earlier at worst.
+ * Sessions that are changed or deleted, for example on sign-out, are evicted on every node through a Redis channel.
+ * A node that misses the message serves the cached session until it expires.
+ */
+@Slf4j
+public class NearCachingSessionRepository<S extends Session>
+        implements SessionRepository<NearCachingSessionRepository<S>.CachedSession>, MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "spring:session:invalidations";
+
+    private static final String MESSAGE_SEPARATOR = " ";
+
+    private final SessionRepository<S> delegate;
+    private final RedisSerializer<Object> serializer;
+    private final StringRedisTemplate redisTemplate;
+    private final int maxSize;
+    private final Duration ttl;
+    private final Duration lastAccessWriteInterval;
+
+    /**
+     * Identifies the messages of this node, which has already updated its own cache.
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    /**
+     * Incremented on every invalidation, so that a session loaded before a change cannot cache its stale state.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    public NearCachingSessionRepository(SessionRepository<S> delegate, RedisSerializer<Object> serializer,
+                                        StringRedisTemplate redisTemplate, int maxSize, Duration ttl,
+                                        Duration lastAccessWriteInterval) {
+        this.delegate = delegate;
+        this.serializer = serializer;
+        this.redisTemplate = redisTemplate;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.lastAccessWriteInterval = lastAccessWriteInterval;
+    }
+
+    @Override
+    public CachedSession createSession() {
+        S session = delegate.createSession();
+        return new CachedSession(new MapSession(session), session, true);
+    }
+
+    @Override
+    public void save(CachedSession session) {
+        session.save();
+    }
+
+    @Override
+    public CachedSession findById(String id) {
+        Snapshot snapshot = get(id);
+
+        if (snapshot != null) {
+            return new CachedSession(snapshot.toSession(serializer), null, false);
+        }
+
+        long loadVersion = version.get();
+        S session = delegate.findById(id);
+
+        if (session == null) {
+            return null;
+        }
+
+        put(Snapshot.of(session, session.getLastAccessedTime(), serializer), loadVersion);
+        return new CachedSession(new MapSession(session), session, false);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        delegate.deleteById(id);
+        invalidate(id);
+        publishInvalidation(id);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(MESSAGE_SEPARATOR, 2);
+
+        if (parts.length == 2 && !parts[0].equals(nodeId)) {
+            invalidate(parts[1]);
+        }
+    }
+
+    private Snapshot get(String id) {
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0 && !entry.snapshot.isExpired()) {
+                return entry.snapshot;
+            }
+
+            if (entry != null) {
+                entries.remove(id);
+            }
+        }
+
+        return null;
+    }
+
+    private void put(Snapshot snapshot, long loadVersion) {
+        synchronized (entries) {
+            if (version.get() != loadVersion) {
+                return;
+            }
+
+            entries.put(snapshot.id, new Entry(snapshot, System.nanoTime() + ttl.toNanos()));
+
+            if (entries.size() > maxSize) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+    }
+
+    private void invalidate(String id) {
+        synchronized (entries) {
+            version.incrementAndGet();
+            entries.remove(id);
+        }
+    }
+
+    // the cache of other nodes expires anyway, so failing to notify them must not fail the request
+    private void publishInvalidation(String id) {
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, nodeId + MESSAGE_SEPARATOR + id);
+        } catch (DataAccessException e) {
+            log.warn("Failed to publish invalidation of session '{}'", id, e);
+        }
+    }
+
+    /**
+     * A session of one request. Changes are kept in a copy and written to Redis on {@link #save()}.
+     */
+    public final class CachedSession implements Session {
+
+        private final MapSession session;
+        private final Set<String> changedAttributeNames = new HashSet<>();
+        private S delegateSession;
+        private boolean isNew;
+        private boolean maxInactiveIntervalChanged;
+        private String savedId;
+        private Instant savedLastAccessedTime;
+
+        private CachedSession(MapSession session, S delegateSession, boolean isNew) {
+            this.session = session;
+            this.delegateSession = delegateSession;
+            this.isNew = isNew;
+            this.savedId = session.getId();
+            this.savedLastAccessedTime = session.getLastAccessedTime();
+        }
+
+        @Override
+        public String getId() {
+            return session.getId();
+        }
+
+        @Override
+        public String changeSessionId() {
+            if (findDelegateSession() == null) {
+                // the session was deleted from Redis after it was cached, so it is stored again under the new id
+                delegateSession = delegate.createSession();
+                changedAttributeNames.addAll(session.getAttributeNames());
+                maxInactiveIntervalChanged = true;
+                isNew = true;
+            }
+
+            String id = delegateSession.changeSessionId();
+            session.setId(id);
+
+            return id;
+        }
+
+        @Override
+        public <T> T getAttribute(String attributeName) {
+            return session.getAttribute(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return session.getAttributeNames();
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            session.setAttribute(attributeName, attributeValue);
+            changedAttributeNames.add(attributeName);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            setAttribute(attributeName, null);
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return session.getCreationTime();
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            session.setLastAccessedTime(lastAccessedTime);
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return session.getLastAccessedTime();
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            session.setMaxInactiveInterval(interval);
+            maxInactiveIntervalChanged = true;
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return session.getMaxInactiveInterval();
+        }
+
+        @Override
+        public boolean isExpired() {
+            return session.isExpired();
+        }
+
+        private void save() {
+            boolean changed = !changedAttributeNames.isEmpty() || maxInactiveIntervalChanged || !savedId.equals(getId());
+            boolean lastAccessDue = Duration.between(savedLastAccessedTime, getLastAccessedTime())
+                    .compareTo(lastAccessWriteInterval) >= 0;
+
+            if (!isNew && !changed && !lastAccessDue) {
+                return;
+            }
+
+            if (findDelegateSession() == null) {
+                // deleted elsewhere, for example signed out on another node, so it must not be stored again
+                log.debug("Session '{}' was deleted before its changes were saved", getId());
+                invalidate(getId());
+                return;
+            }
+
+            for (String attributeName : changedAttributeNames) {
+                delegateSession.setAttribute(attributeName, session.getAttribute(attributeName));
+            }
+
+            if (maxInactiveIntervalChanged) {
+                delegateSession.setMaxInactiveInterval(getMaxInactiveInterval());
+            }
+
+            delegateSession.setLastAccessedTime(getLastAccessedTime());
+
+            long saveVersion = version.get();
+            delegate.save(delegateSession);
+
+            if (!savedId.equals(getId())) {
+                invalidate(savedId);
+                publishInvalidation(savedId);
+            } else if (changed && !isNew) {
+                publishInvalidation(getId());
+            }
+
+            put(Snapshot.of(session, getLastAccessedTime(), serializer), saveVersion);
+
+            changedAttributeNames.clear();
+            maxInactiveIntervalChanged = false;
+            isNew = false;
+            savedId = getId();
+            savedLastAccessedTime = getLastAccessedTime();
+        }
+
+        /**
+         * Loads the session from Redis unless it was loaded already, to apply changes to it.
+         */
+        private S findDelegateSession() {
+            if (delegateSession == null) {
+                delegateSession = delegate.findById(savedId);
+            }
+
+            return delegateSession;
+        }
+    }
+
+    /**
+     * The state of a session as stored in Redis, with its attribute values serialized.
+     */
+    private record Snapshot(String id, Instant creationTime, Instant lastAccessedTime, Duration maxInactiveInterval,
+                            Map<String, byte[]> attributes) {
+
+        private static Snapshot of(Session session, Instant lastAccessedTime, RedisSerializer<Object> serializer) {
+            Map<String, byte[]> attributes = new HashMap<>();
+
+            for (String attributeName : session.getAttributeNames()) {
+                attributes.put(attributeName, serializer.serialize(session.getAttribute(attributeName)));
+            }
+
+            return new Snapshot(session.getId(), session.getCreationTime(), lastAccessedTime,
+                    session.getMaxInactiveInterval(), attributes);
+        }
+
+        private MapSession toSession(RedisSerializer<Object> serializer) {
+            MapSession session = new MapSession(id);
+            session.setCreationTime(creationTime);
+            session.setLastAccessedTime(lastAccessedTime);
+            session.setMaxInactiveInterval(maxInactiveInterval);
+            attributes.forEach((attributeName, value) -> session.setAttribute(attributeName, serializer.deserialize(value)));
+
+            return session;
+        }
+
+        private boolean isExpired() {
+            return !maxInactiveInterval.isNegative()
+                    && Instant.now().isAfter(lastAccessedTime.plus(maxInactiveInterval));
+        }
+    }
+
+    private record Entry(Snapshot snapshot, long expiresAt) {
+    }
+}
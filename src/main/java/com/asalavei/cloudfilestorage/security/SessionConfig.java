@@ -0,0 +1,62 @@
+package com.asalavei.cloudfilestorage.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.session.Session;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.session.data.redis.RedisSessionRepository;
+
+import java.time.Duration;
+
+/**
+ * Stores sessions in Redis with {@link CompactSessionSerializer}, behind {@link NearCachingSessionRepository}.
+ * Declaring the repository replaces the one Spring Boot configures for Redis.
+ */
+@Configuration
+@EnableSpringHttpSession
+public class SessionConfig {
+
+    @Bean
+    public NearCachingSessionRepository<? extends Session> sessionRepository(
+            RedisConnectionFactory connectionFactory,
+            StringRedisTemplate redisTemplate,
+            ServerProperties serverProperties,
+            @Value("${session.near-cache.max-size}") int maxSize,
+            @Value("${session.near-cache.ttl}") Duration ttl,
+            @Value("${session.near-cache.last-access-write-interval}") Duration lastAccessWriteInterval) {
+        CompactSessionSerializer serializer = new CompactSessionSerializer();
+
+        RedisTemplate<String, Object> sessionRedisTemplate = new RedisTemplate<>();
+        sessionRedisTemplate.setConnectionFactory(connectionFactory);
+        sessionRedisTemplate.setKeySerializer(RedisSerializer.string());
+        sessionRedisTemplate.setHashKeySerializer(RedisSerializer.string());
+        sessionRedisTemplate.setValueSerializer(serializer);
+        sessionRedisTemplate.setHashValueSerializer(serializer);
+        sessionRedisTemplate.afterPropertiesSet();
+
+        RedisSessionRepository redisSessionRepository = new RedisSessionRepository(sessionRedisTemplate);
+        redisSessionRepository.setDefaultMaxInactiveInterval(serverProperties.getServlet().getSession().getTimeout());
+
+        return new NearCachingSessionRepository<>(redisSessionRepository, serializer, redisTemplate, maxSize, ttl,
+                lastAccessWriteInterval);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer sessionInvalidationListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            NearCachingSessionRepository<?> sessionRepository) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(sessionRepository, new ChannelTopic(NearCachingSessionRepository.INVALIDATION_CHANNEL));
+
+        return container;
+    }
+}
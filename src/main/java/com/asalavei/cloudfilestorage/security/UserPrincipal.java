@@ -1,30 +1,54 @@
 package com.asalavei.cloudfilestorage.security;
 
 import com.asalavei.cloudfilestorage.auth.user.User;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.security.core.CredentialsContainer;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.io.Serial;
 import java.util.Collection;
 import java.util.List;
 
-public record UserPrincipal(User user) implements UserDetails {
+/**
+ * The signed-in user as kept in the session: the id and username only. The password hash is needed only to
+ * authenticate and is erased once authentication succeeds, so it is never written to the session.
+ */
+@Getter
+@ToString(exclude = "password")
+@EqualsAndHashCode(of = "id")
+public final class UserPrincipal implements UserDetails, CredentialsContainer {
 
-    @Override
-    public Collection<? extends GrantedAuthority> getAuthorities() {
-        return List.of();
+    @Serial
+    private static final long serialVersionUID = 2L;
+
+    private final Long id;
+    private final String username;
+    private String password;
+
+    public UserPrincipal(Long id, String username) {
+        this(id, username, null);
     }
 
-    @Override
-    public String getPassword() {
-        return user.getPassword();
+    private UserPrincipal(Long id, String username, String password) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+    }
+
+    public static UserPrincipal of(User user) {
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getPassword());
     }
 
     @Override
-    public String getUsername() {
-        return user.getUsername();
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of();
     }
 
-    public Long getId() {
-        return user.getId();
+    @Override
+    public void eraseCredentials() {
+        password = null;
     }
 }
@@ -0,0 +1,75 @@
+package com.asalavei.cloudfilestorage.storage;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * A single byte range of a file, as requested with {@code Range} and resolved against the size of the file.
+ *
+ * @param start the first byte of the range
+ * @param end   the last byte of the range, inclusive
+ */
+record ByteRange(long start, long end, long size) {
+
+    /**
+     * Returns the range to send, or {@code null} if the whole file has to be sent. Multiple ranges are served as
+     * the whole file, and malformed ranges are ignored as allowed by RFC 9110, as are ranges whose {@code If-Range}
+     * names another version of the file, so that a resumed download does not mix parts of different versions.
+     *
+     * @throws IllegalArgumentException if the range lies outside the file
+     */
+    static ByteRange of(HttpHeaders headers, String etag, Instant lastModified, long size) {
+        List<HttpRange> ranges;
+
+        try {
+            ranges = headers.getRange();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        if (ranges.size() != 1 || !isRangeValid(headers, etag, lastModified)) {
+            return null;
+        }
+
+        HttpRange range = ranges.getFirst();
+        long start = range.getRangeStart(size);
+        long end = range.getRangeEnd(size);
+
+        // HttpRange does not reject a range that starts after the end of the file
+        if (start >= size || start > end) {
+            throw new IllegalArgumentException("Range " + range + " is not satisfiable for " + size + " bytes");
+        }
+
+        return new ByteRange(start, end, size);
+    }
+
+    long length() {
+        return end - start + 1;
+    }
+
+    String contentRange() {
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+
+    private static boolean isRangeValid(HttpHeaders headers, String etag, Instant lastModified) {
+        String ifRange = headers.getFirst(HttpHeaders.IF_RANGE);
+
+        if (ifRange == null) {
+            return true;
+        }
+
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+
+        try {
+            return headers.getFirstDate(HttpHeaders.IF_RANGE) == lastModified.truncatedTo(ChronoUnit.SECONDS).toEpochMilli();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -1,13 +1,21 @@
 package com.asalavei.cloudfilestorage.storage;
 
 import com.asalavei.cloudfilestorage.security.UserPrincipal;
+import com.asalavei.cloudfilestorage.storage.minio.MinioObjectStat;
+import com.asalavei.cloudfilestorage.storage.ratelimit.ExpensiveOperation;
+import com.asalavei.cloudfilestorage.storage.thumbnail.ThumbnailService;
 import com.asalavei.cloudfilestorage.util.HttpUtil;
 import com.asalavei.cloudfilestorage.util.PathUtil;
 import com.asalavei.cloudfilestorage.validation.constraint.ValidObjectPath;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -18,14 +26,17 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import org.springframework.web.util.UriUtils;
 
-import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 
 import static com.asalavei.cloudfilestorage.util.Constants.*;
@@ -36,30 +47,92 @@ import static com.asalavei.cloudfilestorage.util.Constants.*;
 @RequestMapping("/storage")
 public class FileStorageController {
 
+    /**
+     * Lets browsers keep downloaded files but revalidate them on every use.
+     */
+    private static final CacheControl DOWNLOAD_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    /**
+     * Lets browsers keep thumbnails without revalidating them, since a new image version gets a new URL.
+     */
+    private static final CacheControl THUMBNAIL_CACHE_CONTROL =
+            CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable();
+
     private final FileStorageService fileStorageService;
 
+    /**
+     * Downloads a file, answering conditional requests with 304 and single byte ranges with 206, so that
+     * browsers can revalidate cached files, resume downloads and seek in media.
+     */
     @GetMapping("/download")
     public ResponseEntity<InputStreamResource> downloadFile(@RequestParam(PATH_PARAM) @ValidObjectPath String path,
-                                                            @AuthenticationPrincipal UserPrincipal userPrincipal) {
-        InputStream inputStream = fileStorageService.downloadFile(userPrincipal.getId(), path);
-
-        return ResponseEntity.ok()
-                .header("Content-Disposition", getContentDisposition(PathUtil.getFileName(path)))
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(new InputStreamResource(inputStream));
+                                                            @AuthenticationPrincipal UserPrincipal userPrincipal,
+                                                            @RequestHeader HttpHeaders headers, WebRequest webRequest,
+                                                            HttpServletResponse response) {
+        Long userId = userPrincipal.getId();
+        MinioObjectStat stat = fileStorageService.getFileStat(userId, path);
+        String etag = "\"" + stat.etag() + "\"";
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, DOWNLOAD_CACHE_CONTROL.getHeaderValue());
+
+        if (webRequest.checkNotModified(etag, stat.lastModified().toEpochMilli())) {
+            return null;
+        }
+
+        ByteRange range;
+
+        try {
+            // a compressed file is read as a whole
+            range = stat.compressed() ? null : ByteRange.of(headers, etag, stat.lastModified(), stat.size());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + stat.size())
+                    .build();
+        }
+
+        if (range == null) {
+            return withFileHeaders(ResponseEntity.ok(), path, etag, stat)
+                    .contentLength(stat.size())
+                    .body(new InputStreamResource(fileStorageService.downloadFile(userId, path)));
+        }
+
+        return withFileHeaders(ResponseEntity.status(HttpStatus.PARTIAL_CONTENT), path, etag, stat)
+                .header(HttpHeaders.CONTENT_RANGE, range.contentRange())
+                .contentLength(range.length())
+                .body(new InputStreamResource(fileStorageService.downloadFile(userId, path, range.start(), range.length())));
     }
 
+    @ExpensiveOperation
     @GetMapping("/download-multiple")
-    public ResponseEntity<InputStreamResource> downloadFolder(@RequestParam(PATH_PARAM) @ValidObjectPath String path,
-                                                              @AuthenticationPrincipal UserPrincipal userPrincipal) {
-        InputStream inputStream = fileStorageService.downloadFolderAsZip(userPrincipal.getId(), path);
+    public ResponseEntity<StreamingResponseBody> downloadFolder(@RequestParam(PATH_PARAM) @ValidObjectPath String path,
+                                                                @AuthenticationPrincipal UserPrincipal userPrincipal) {
+        StreamingResponseBody responseBody = fileStorageService.downloadFolderAsZip(userPrincipal.getId(), path);
 
         return ResponseEntity.ok()
-                .header("Content-Disposition", getContentDisposition(PathUtil.generateZipFilename(path)))
+                .header(HttpHeaders.CONTENT_DISPOSITION, getContentDisposition(PathUtil.generateZipFilename(path)))
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(new InputStreamResource(inputStream));
+                .body(responseBody);
+    }
+
+    /**
+     * Serves the thumbnail of an image. A thumbnail that has not been generated yet is answered with 404,
+     * which browsers must not cache.
+     */
+    @GetMapping("/thumbnail")
+    public ResponseEntity<InputStreamResource> thumbnail(@RequestParam(PATH_PARAM) @ValidObjectPath String path,
+                                                         @RequestParam(VERSION_PARAM) long version,
+                                                         @AuthenticationPrincipal UserPrincipal userPrincipal) {
+        return fileStorageService.getThumbnail(userPrincipal.getId(), path, version)
+                .map(inputStream -> ResponseEntity.ok()
+                        .cacheControl(THUMBNAIL_CACHE_CONTROL)
+                        .contentType(ThumbnailService.CONTENT_TYPE)
+                        .body(new InputStreamResource(inputStream)))
+                .orElseGet(() -> ResponseEntity.notFound()
+                        .cacheControl(CacheControl.noStore())
+                        .build());
     }
 
+    @ExpensiveOperation
     @GetMapping("/search")
     public String search(@RequestParam(QUERY_PARAM) String query, @AuthenticationPrincipal UserPrincipal userPrincipal, Model model) {
         model.addAttribute(OBJECTS_ATTRIBUTE, fileStorageService.search(userPrincipal.getId(), query));
@@ -70,9 +143,16 @@ public class FileStorageController {
     public String upload(@RequestParam(value = PATH_PARAM, defaultValue = PathUtil.DELIMITER) @ValidObjectPath String path,
                          @RequestParam(FILES_PARAM) List<MultipartFile> files, @AuthenticationPrincipal UserPrincipal userPrincipal,
                          RedirectAttributes redirectAttributes, HttpServletRequest request) {
-        files.forEach(file -> fileStorageService.upload(userPrincipal.getId(), file, path));
+        List<UploadResultDto> results = fileStorageService.uploadAll(userPrincipal.getId(), files, path);
+        long uploaded = results.stream().filter(UploadResultDto::uploaded).count();
+
+        if (uploaded == results.size()) {
+            redirectAttributes.addFlashAttribute(MESSAGE_ATTRIBUTE, "Upload complete");
+        } else {
+            redirectAttributes.addFlashAttribute(MESSAGE_ATTRIBUTE, "Uploaded %d of %d files".formatted(uploaded, results.size()));
+            redirectAttributes.addFlashAttribute(UPLOAD_RESULTS_ATTRIBUTE, results);
+        }
 
-        redirectAttributes.addFlashAttribute(MESSAGE_ATTRIBUTE, "Upload complete");
         return HttpUtil.redirectToReferer(request);
     }
 
@@ -85,24 +165,66 @@ public class FileStorageController {
         return HttpUtil.redirectToReferer(request);
     }
 
+    /**
+     * Renames a file at once. A folder is renamed by a background job, whose id is passed to the page to poll.
+     */
+    @ExpensiveOperation(foldersOnly = true)
     @PatchMapping
     public String rename(@Valid ObjectRequestDto objectRequestDto, @AuthenticationPrincipal UserPrincipal userPrincipal,
                          RedirectAttributes redirectAttributes, HttpServletRequest request) {
-        fileStorageService.rename(userPrincipal.getId(), objectRequestDto.getName(), objectRequestDto.getPath());
+        Long userId = userPrincipal.getId();
+
+        if (PathUtil.isFolder(objectRequestDto.getPath())) {
+            String jobId = fileStorageService.submitFolderRename(userId, objectRequestDto.getName(), objectRequestDto.getPath());
+            redirectAttributes.addFlashAttribute(JOB_ID_ATTRIBUTE, jobId);
+        } else {
+            fileStorageService.rename(userId, objectRequestDto.getName(), objectRequestDto.getPath());
+            redirectAttributes.addFlashAttribute(MESSAGE_ATTRIBUTE, "Renamed successfully");
+        }
 
-        redirectAttributes.addFlashAttribute(MESSAGE_ATTRIBUTE, "Renamed successfully");
         return HttpUtil.redirectToReferer(request);
     }
 
+    /**
+     * Deletes a file at once. A folder is deleted by a background job, whose id is passed to the page to poll.
+     */
+    @ExpensiveOperation(foldersOnly = true)
     @DeleteMapping
     public String delete(@RequestParam(PATH_PARAM) @ValidObjectPath String path, @AuthenticationPrincipal UserPrincipal userPrincipal,
                          RedirectAttributes redirectAttributes, HttpServletRequest request) {
-        fileStorageService.delete(userPrincipal.getId(), path);
+        Long userId = userPrincipal.getId();
+
+        if (PathUtil.isFolder(path)) {
+            redirectAttributes.addFlashAttribute(JOB_ID_ATTRIBUTE, fileStorageService.submitFolderDelete(userId, path));
+        } else {
+            fileStorageService.delete(userId, path);
+            redirectAttributes.addFlashAttribute(MESSAGE_ATTRIBUTE, "Deleted successfully");
+        }
 
-        redirectAttributes.addFlashAttribute(MESSAGE_ATTRIBUTE, "Deleted successfully");
         return HttpUtil.redirectToReferer(request);
     }
 
+    /**
+     * Adds the headers shared by full and partial downloads of a file.
+     */
+    private ResponseEntity.BodyBuilder withFileHeaders(ResponseEntity.BodyBuilder responseBuilder, String path,
+                                                       String etag, MinioObjectStat stat) {
+        return responseBuilder
+                .header(HttpHeaders.CONTENT_DISPOSITION, getContentDisposition(PathUtil.getFileName(path)))
+                .header(HttpHeaders.ACCEPT_RANGES, stat.compressed() ? "none" : "bytes")
+                .contentType(getContentType(stat))
+                .eTag(etag)
+                .lastModified(stat.lastModified());
+    }
+
+    private MediaType getContentType(MinioObjectStat stat) {
+        try {
+            return stat.contentType() == null ? MediaType.APPLICATION_OCTET_STREAM : MediaType.parseMediaType(stat.contentType());
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
     private String getContentDisposition(String fileName) {
         return "attachment; filename*=UTF-8''" + UriUtils.encode(fileName, StandardCharsets.UTF_8);
     }
@@ -2,26 +2,61 @@ package com.asalavei.cloudfilestorage.storage;
 
 import com.asalavei.cloudfilestorage.storage.exception.FileListingException;
 import com.asalavei.cloudfilestorage.storage.exception.FileStorageException;
+import com.asalavei.cloudfilestorage.storage.job.JobContext;
+import com.asalavei.cloudfilestorage.storage.job.JobPhase;
+import com.asalavei.cloudfilestorage.storage.job.JobRepository;
+import com.asalavei.cloudfilestorage.storage.job.JobType;
+import com.asalavei.cloudfilestorage.storage.listing.ListingCache;
 import com.asalavei.cloudfilestorage.storage.minio.MinioOperationException;
 import com.asalavei.cloudfilestorage.storage.exception.ObjectNotFoundException;
+import com.asalavei.cloudfilestorage.storage.minio.MinioObject;
 import com.asalavei.cloudfilestorage.storage.minio.MinioObjectDto;
+import com.asalavei.cloudfilestorage.storage.minio.MinioObjectPage;
+import com.asalavei.cloudfilestorage.storage.minio.MinioObjectStat;
+import com.asalavei.cloudfilestorage.storage.minio.MinioObjectsSummary;
 import com.asalavei.cloudfilestorage.storage.minio.MinioRepository;
+import com.asalavei.cloudfilestorage.storage.minio.PrefetchingObjectIterator;
+import com.asalavei.cloudfilestorage.storage.search.PathTree;
+import com.asalavei.cloudfilestorage.storage.search.SearchIndexService;
+import com.asalavei.cloudfilestorage.storage.thumbnail.ThumbnailService;
+import com.asalavei.cloudfilestorage.storage.upload.UploadSession;
+import com.asalavei.cloudfilestorage.storage.upload.UploadSessionRepository;
+import com.asalavei.cloudfilestorage.storage.upload.UploadSessionResponseDto;
+import com.asalavei.cloudfilestorage.storage.usage.StorageUsageDto;
+import com.asalavei.cloudfilestorage.storage.usage.StorageUsageService;
+import com.asalavei.cloudfilestorage.storage.zip.ParallelZipFactory;
+import com.asalavei.cloudfilestorage.storage.zip.ParallelZipOutputStream;
+import com.asalavei.cloudfilestorage.storage.zip.ZipCompressionPolicy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -32,7 +67,21 @@ import static com.asalavei.cloudfilestorage.util.PathUtil.*;
 @RequiredArgsConstructor
 public class FileStorageService {
 
+    private static final int MAX_UPLOAD_PARTS = 10_000;
+    private static final long MIN_UPLOAD_PART_SIZE = DataSize.ofMegabytes(5).toBytes();
+    // the MinIO SDK holds a whole part in memory while sending it
+    private static final long MAX_UPLOAD_PART_SIZE = DataSize.ofMegabytes(64).toBytes();
+
     private final MinioRepository minioRepository;
+    private final SearchIndexService searchIndexService;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final JobRepository jobRepository;
+    private final ListingCache listingCache;
+    private final StorageUsageService storageUsageService;
+    private final ZipCompressionPolicy zipCompressionPolicy;
+    private final ParallelZipFactory parallelZipFactory;
+    private final ThumbnailService thumbnailService;
+    private final ExecutorService minioExecutor;
 
     @Value("${minio.bucket.name}")
     private String bucketName;
@@ -40,26 +89,217 @@ public class FileStorageService {
     @Value("${storage.user-root-format}")
     private String userRootFormat;
 
-    public void upload(Long userId, MultipartFile file, String path) {
-        String fileName = file.getOriginalFilename();
+    @Value("${storage.listing.page-size}")
+    private int pageSize;
+
+    @Value("${storage.upload.parallelism}")
+    private int uploadParallelism;
+
+    @Value("${storage.upload.part-size}")
+    private DataSize uploadPartSize;
+
+    /**
+     * Uploads the files concurrently, at most {@code storage.upload.parallelism} at a time. Name conflicts are
+     * checked with one listing per target folder, and a file that fails does not stop the others. Files that do
+     * not fit into the remaining storage quota are rejected.
+     *
+     * @return the result of every file, in the order of the files
+     */
+    public List<UploadResultDto> uploadAll(Long userId, List<MultipartFile> files, String path) {
+        Map<String, Set<String>> existingObjectsByFolder = new HashMap<>();
+        List<CompletableFuture<UploadResultDto>> results = new ArrayList<>(files.size());
+        Semaphore permits = new Semaphore(uploadParallelism);
+        long availableBytes = storageUsageService.getUsage(userId).getAvailableBytes();
+
+        for (MultipartFile file : files) {
+            String fileName = file.getOriginalFilename();
+            String fullPath = getFullPath(userId, path + fileName);
+
+            try {
+                // potential race condition, but we accept it
+                Set<String> existingObjects = existingObjectsByFolder.computeIfAbsent(getParentFolderPath(fullPath),
+                        this::listObjectNames);
+
+                if (existingObjects.contains(fullPath) || existingObjects.contains(fullPath + DELIMITER)) {
+                    log.info("File or folder already exists when uploading file '{}' for user '{}', bucket '{}', path '{}'",
+                            fileName, userId, bucketName, fullPath);
+                    results.add(CompletableFuture.completedFuture(
+                            UploadResultDto.failure(fileName, "There is already a file or folder with this name")));
+                    continue;
+                }
+
+                if (file.getSize() > availableBytes) {
+                    log.info("Storage quota exceeded when uploading file '{}' for user '{}', bucket '{}', path '{}'",
+                            fileName, userId, bucketName, fullPath);
+                    results.add(CompletableFuture.completedFuture(
+                            UploadResultDto.failure(fileName, "Not enough storage space")));
+                    continue;
+                }
+
+                availableBytes -= file.getSize();
+
+                // a second file with the same name in this batch conflicts with the first one
+                existingObjects.add(fullPath);
+            } catch (MinioOperationException e) {
+                log.error("Error while checking folder to upload file '{}' for user '{}', bucket '{}', path '{}'",
+                        fileName, userId, bucketName, fullPath, e);
+                results.add(CompletableFuture.completedFuture(UploadResultDto.failure(fileName, "Unable to upload file")));
+                continue;
+            }
+
+            permits.acquireUninterruptibly();
+
+            try {
+                results.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return uploadFile(userId, file, path);
+                    } finally {
+                        permits.release();
+                    }
+                }, minioExecutor));
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        return results.stream()
+                .map(CompletableFuture::join)
+                .toList();
+    }
+
+    /**
+     * Starts a resumable upload of a file of any size. The file is sent in parts of the returned part size
+     * and appears in storage only once the upload is completed.
+     */
+    public UploadSessionResponseDto initiateUpload(Long userId, String path, String fileName, long size, String contentType) {
         String fullPath = getFullPath(userId, path + fileName);
+        storageUsageService.checkQuota(userId, size);
 
         try {
             // potential race condition, but we accept it
             if (isObjectExists(bucketName, fullPath)) {
-                log.info("File or folder already exists when uploading file '{}' for user '{}', bucket '{}', path '{}'",
-                        file.getOriginalFilename(), userId, bucketName, fullPath);
+                log.info("File or folder already exists when initiating upload of file '{}' for user '{}', bucket '{}', path '{}'",
+                        fileName, userId, bucketName, fullPath);
                 throw new FileStorageException("There is already a file or folder with file name you uploaded");
             }
 
-            minioRepository.save(bucketName, fullPath, file.getInputStream(), file.getSize(), file.getContentType());
-        } catch (MinioOperationException | IOException e) {
-            log.error("Error while uploading file '{}' for user '{}', bucket '{}', path '{}'",
-                    file.getOriginalFilename(), userId, bucketName, fullPath, e);
+            String uploadId = minioRepository.initiateUpload(bucketName, fullPath, contentType);
+            UploadSession session = new UploadSession(UUID.randomUUID().toString(), userId, path + fileName, uploadId,
+                    contentType, size, getUploadPartSize(size), Map.of());
+
+            uploadSessionRepository.save(session);
+
+            return UploadSessionResponseDto.of(session);
+        } catch (MinioOperationException e) {
+            log.error("Error while initiating upload of file '{}' for user '{}', bucket '{}', path '{}'",
+                    fileName, userId, bucketName, fullPath, e);
             throw new FileStorageException("Unable to upload file: " + fileName);
         }
     }
 
+    public UploadSessionResponseDto getUpload(Long userId, String uploadSessionId) {
+        return UploadSessionResponseDto.of(getUploadSession(userId, uploadSessionId));
+    }
+
+    /**
+     * Stores one part of the upload. Parts may be sent in any order and in parallel, and a part that is sent
+     * again replaces the previous one.
+     */
+    public void uploadPart(Long userId, String uploadSessionId, int partNumber, InputStream inputStream, long length) {
+        UploadSession session = getUploadSession(userId, uploadSessionId);
+        String fullPath = getFullPath(userId, session.path());
+
+        if (partNumber < 1 || partNumber > session.getPartCount()) {
+            throw new FileStorageException("Invalid upload part number: " + partNumber);
+        }
+
+        long partLength = session.getPartLength(partNumber);
+
+        if (length != partLength) {
+            throw new FileStorageException(String.format("Upload part %d must be %d bytes long", partNumber, partLength));
+        }
+
+        try {
+            String etag = minioRepository.uploadPart(bucketName, fullPath, session.uploadId(), partNumber, inputStream,
+                    partLength);
+            uploadSessionRepository.savePart(session, partNumber, etag);
+        } catch (ObjectNotFoundException e) {
+            uploadSessionRepository.delete(session);
+            throw new ObjectNotFoundException("Upload has expired or was aborted");
+        } catch (MinioOperationException e) {
+            log.error("Error while uploading part {} of upload '{}' for user '{}', bucket '{}', path '{}'",
+                    partNumber, uploadSessionId, userId, bucketName, fullPath, e);
+            throw new FileStorageException("Unable to upload file: " + getFileName(session.path()));
+        }
+    }
+
+    public void completeUpload(Long userId, String uploadSessionId) {
+        UploadSession session = getUploadSession(userId, uploadSessionId);
+        String fullPath = getFullPath(userId, session.path());
+
+        if (session.parts().size() != session.getPartCount()) {
+            throw new FileStorageException(String.format("Upload is missing %d of %d parts",
+                    session.getPartCount() - session.parts().size(), session.getPartCount()));
+        }
+
+        // checked again, since other uploads may have used up the space since this one started
+        storageUsageService.checkQuota(userId, session.size());
+
+        try {
+            // the path is checked again, since a file or folder may have been created there after the upload started
+            if (isObjectExists(bucketName, fullPath)) {
+                log.info("File or folder already exists when completing upload '{}' for user '{}', bucket '{}', path '{}'",
+                        uploadSessionId, userId, bucketName, fullPath);
+                abortUploadQuietly(session, fullPath);
+                throw new FileStorageException("There is already a file or folder with file name you uploaded");
+            }
+
+            minioRepository.completeUpload(bucketName, fullPath, session.uploadId(), session.parts(),
+                    session.size(), session.contentType());
+            uploadSessionRepository.delete(session);
+            storageUsageService.recordAdded(userId, 1, session.size());
+            searchIndexService.onSaved(userId, session.path());
+            listingCache.invalidate(userId, session.path());
+            thumbnailService.generateAsync(fullPath);
+        } catch (ObjectNotFoundException e) {
+            uploadSessionRepository.delete(session);
+            throw new ObjectNotFoundException("Upload has expired or was aborted");
+        } catch (MinioOperationException e) {
+            log.error("Error while completing upload '{}' for user '{}', bucket '{}', path '{}'",
+                    uploadSessionId, userId, bucketName, fullPath, e);
+            throw new FileStorageException("Unable to upload file: " + getFileName(session.path()));
+        }
+    }
+
+    public void abortUpload(Long userId, String uploadSessionId) {
+        UploadSession session = getUploadSession(userId, uploadSessionId);
+        String fullPath = getFullPath(userId, session.path());
+
+        try {
+            minioRepository.abortUpload(bucketName, fullPath, session.uploadId());
+        } catch (ObjectNotFoundException e) {
+            log.info("Upload '{}' for user '{}' was already removed from bucket '{}'", uploadSessionId, userId, bucketName);
+        } catch (MinioOperationException e) {
+            log.error("Error while aborting upload '{}' for user '{}', bucket '{}', path '{}'",
+                    uploadSessionId, userId, bucketName, fullPath, e);
+            throw new FileStorageException("Unable to abort upload of file: " + getFileName(session.path()));
+        }
+
+        uploadSessionRepository.delete(session);
+    }
+
+    private void abortUploadQuietly(UploadSession session, String fullPath) {
+        try {
+            minioRepository.abortUpload(bucketName, fullPath, session.uploadId());
+        } catch (ObjectNotFoundException | MinioOperationException e) {
+            // the parts are removed by the expired upload sweep
+            log.warn("Failed to abort upload '{}', bucket '{}', path '{}'", session.id(), bucketName, fullPath, e);
+        }
+
+        uploadSessionRepository.delete(session);
+    }
+
     public void createFolder(Long userId, String folderName, String path) {
         String fullPath = getFullPath(userId, path + folderName + DELIMITER);
 
@@ -71,7 +311,10 @@ public class FileStorageService {
                 throw new FileStorageException("There is already a file or folder with folder name you created");
             }
 
-            minioRepository.save(bucketName, fullPath, new ByteArrayInputStream(new byte[0]), 0, "application/x-directory");
+            minioRepository.save(bucketName, fullPath, new ByteArrayResource(new byte[0]), 0, "application/x-directory");
+            storageUsageService.recordAdded(userId, 1, 0);
+            searchIndexService.onSaved(userId, path + folderName + DELIMITER);
+            listingCache.invalidate(userId, path + folderName + DELIMITER);
         } catch (MinioOperationException e) {
             log.error("Error while creating folder '{}' for user '{}', bucket '{}', path '{}'",
                     folderName, userId, bucketName, fullPath, e);
@@ -80,56 +323,66 @@ public class FileStorageService {
     }
 
     public InputStream downloadFile(Long userId, String path) {
-        String fullPath = getFullPath(userId, path);
+        return readFile(userId, path, fullPath -> minioRepository.get(bucketName, fullPath));
+    }
 
-        try {
-            return minioRepository.get(bucketName, fullPath);
-        } catch (ObjectNotFoundException e) {
-            log.warn("File not found to download '{}' for user '{}', bucket '{}'", fullPath, userId, bucketName, e);
-            throw new FileStorageException(
-                    String.format("Unable to download file '%s' because it does not exist", getFileName(path))
-            );
-        } catch (MinioOperationException e) {
-            log.error("Error while downloading file for user '{}', bucket '{}', path '{}'",
-                    userId, bucketName, fullPath, e);
-            throw new FileStorageException("Unable to download file: " + getFileName(path));
-        }
+    /**
+     * Downloads {@code length} bytes of the file starting at {@code offset}, to serve range requests.
+     */
+    public InputStream downloadFile(Long userId, String path, long offset, long length) {
+        return readFile(userId, path, fullPath -> minioRepository.get(bucketName, fullPath, offset, length));
     }
 
-    public InputStream downloadFolderAsZip(Long userId, String path) {
-        String userRoot = getUserRoot(userId);
-        String fullPath = getFullPath(userId, path);
+    /**
+     * Returns the file size and the validators of conditional requests without opening the file.
+     */
+    public MinioObjectStat getFileStat(Long userId, String path) {
+        return readFile(userId, path, fullPath -> minioRepository.stat(bucketName, fullPath));
+    }
 
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-             ZipOutputStream zipOutputStream = new ZipOutputStream(byteArrayOutputStream)) {
-            Map<String, InputStream> objects = minioRepository.getAll(bucketName, fullPath);
+    /**
+     * Returns the thumbnail of an image, or empty while it is being generated.
+     *
+     * @param version the thumbnail version the file was listed with
+     */
+    public Optional<InputStream> getThumbnail(Long userId, String path, long version) {
+        return readFile(userId, path, fullPath -> thumbnailService.find(fullPath, version));
+    }
 
-            for (Map.Entry<String, InputStream> entry : objects.entrySet()) {
-                try (InputStream inputStream = entry.getValue()) {
-                    String fullObjectPath = entry.getKey();
-                    String relativeObjectPath = getRelativePath(fullObjectPath, userRoot + getParentPath(path));
+    /**
+     * Prepares a ZIP archive of the folder that is written straight to the response as each object is read,
+     * so neither the heap usage nor the time to the first byte depends on the folder size.
+     * <p>
+     * The folder existence is checked eagerly, because once streaming has started the response is already
+     * committed and the error can no longer be reported to the user.
+     */
+    public StreamingResponseBody downloadFolderAsZip(Long userId, String path) {
+        String fullPath = getFullPath(userId, path);
 
-                    zipOutputStream.putNextEntry(new ZipEntry(relativeObjectPath));
-                    inputStream.transferTo(zipOutputStream);
-                    zipOutputStream.closeEntry();
-                }
+        try {
+            // potential race condition, but we accept it
+            if (!minioRepository.isObjectExists(bucketName, fullPath)) {
+                log.warn("Folder not found to download for user '{}', bucket '{}', path '{}'", userId, bucketName, fullPath);
+                throw new FileStorageException(
+                        String.format("Unable to download folder '%s' because it does not exist", getFolderName(path))
+                );
             }
-
-            zipOutputStream.finish();
-            return new ByteArrayInputStream(byteArrayOutputStream.toByteArray());
-        } catch (ObjectNotFoundException e) {
-            log.warn("Folder not found to download for user '{}', bucket '{}', path '{}'", userId, bucketName, fullPath, e);
-            throw new FileStorageException(
-                    String.format("Unable to download folder '%s' because it does not exist", getFolderName(path))
-            );
-        } catch (MinioOperationException | IOException e) {
-            log.error("Error while downloading folder as zip for user '{}', bucket '{}', path '{}'",
+        } catch (MinioOperationException e) {
+            log.error("Error while checking folder to download for user '{}', bucket '{}', path '{}'",
                     userId, bucketName, fullPath, e);
             throw new FileStorageException("Unable to download folder: " + getFolderName(path));
         }
+
+        return outputStream -> writeFolderAsZip(userId, path, outputStream);
     }
 
-    public List<ObjectResponseDto> list(Long userId, String path) {
+    /**
+     * Lists one page of the folder contents. Pages follow the storage key order and hold at most
+     * {@code storage.listing.page-size} objects, folders sorted before files within a page.
+     *
+     * @param cursor the cursor returned with the previous page, or {@code null} for the first page
+     */
+    public ObjectPageResponseDto list(Long userId, String path, String cursor) {
         String userRoot = getUserRoot(userId);
         String fullPath = getFullPath(userId, path);
 
@@ -139,13 +392,23 @@ public class FileStorageService {
                 throw new ObjectNotFoundException("Provided path is not a folder");
             }
 
-            // potential race condition, but we accept it
-            if (!isFolderExists(path, fullPath)) {
+            Optional<ObjectPageResponseDto> cachedPage = listingCache.get(userId, path, cursor);
+
+            if (cachedPage.isPresent()) {
+                return cachedPage.get();
+            }
+
+            byte[] cacheVersion = listingCache.getVersion(userId);
+            String startAfter = cursor == null ? null : fullPath + decodeCursor(cursor);
+            MinioObjectPage minioPage = minioRepository.list(bucketName, fullPath, startAfter, pageSize);
+            List<MinioObjectDto> minioObjects = minioPage.objects();
+
+            // an empty listing is either an empty or a missing folder, only then existence is checked separately
+            if (cursor == null && minioObjects.isEmpty() && !isFolderExists(path, fullPath)) {
                 log.warn("Failed to list objects for user '{}': folder does not exist bucket '{}', path '{}'", userId, bucketName, fullPath);
                 throw new ObjectNotFoundException("Folder does not exist");
             }
 
-            List<MinioObjectDto> minioObjects = minioRepository.list(bucketName, fullPath, false);
             List<ObjectResponseDto> userObjects = new ArrayList<>();
 
             for (MinioObjectDto minioObject : minioObjects) {
@@ -159,6 +422,7 @@ public class FileStorageService {
                             .name(getObjectName(relativeObjectPath))
                             .path(objectPath)
                             .isFolder(isFolder(objectPath))
+                            .thumbnailVersion(thumbnailService.getVersion(objectPath, minioObject.lastModified()))
                             .build()
                     );
                 }
@@ -166,7 +430,14 @@ public class FileStorageService {
 
             sortObjects(userObjects);
 
-            return userObjects;
+            String nextCursor = minioPage.truncated()
+                    ? encodeCursor(minioObjects.getLast().name().substring(fullPath.length()))
+                    : null;
+
+            ObjectPageResponseDto page = new ObjectPageResponseDto(userObjects, nextCursor);
+            listingCache.put(userId, path, cursor, page, cacheVersion);
+
+            return page;
         } catch (MinioOperationException e) {
             log.error("Error while listing objects for user '{}', bucket '{}', path '{}'", userId, bucketName, fullPath, e);
             throw new FileListingException("Unable to list files at path:" + path);
@@ -185,30 +456,16 @@ public class FileStorageService {
      * @return a list of {@link ObjectResponseDto} representing the found objects, each containing the object's name and path
      */
     public List<ObjectResponseDto> search(Long userId, String query) {
-        String userRoot = getUserRoot(userId);
         String userRootPath = getFullPath(userId, DELIMITER);
+        String normalizedQuery = query.trim().toLowerCase();
 
         try {
-            List<MinioObjectDto> minioObjects = minioRepository.list(bucketName, userRootPath, true);
-            Set<ObjectResponseDto> userObjects = new HashSet<>();
-
-            for (MinioObjectDto minioObject : minioObjects) {
-                String objectPath = getRelativePath(minioObject.name(), userRoot);
+            List<String> foundPaths = searchIndexService.isEnabled()
+                    ? searchIndexService.search(userId, normalizedQuery, () -> buildPathTree(userId).collect(name -> true))
+                    : buildPathTree(userId).collect(name -> name.toLowerCase().contains(normalizedQuery));
 
-                if (!isFolder(objectPath)) {
-                    userObjects.add(ObjectResponseDto.builder()
-                            .name(getFileName(objectPath))
-                            .path(getParentFolderPath(objectPath))
-                            .isFolder(false)
-                            .build()
-                    );
-                }
-
-                userObjects.addAll(getParentFolders(objectPath));
-            }
-
-            return userObjects.stream()
-                    .filter(object -> object.getName().toLowerCase().contains(query.trim().toLowerCase()))
+            return foundPaths.stream()
+                    .map(this::toSearchResult)
                     .sorted(Comparator.comparing(object -> object.getName().toLowerCase()))
                     .toList();
         } catch (MinioOperationException e) {
@@ -218,25 +475,82 @@ public class FileStorageService {
         }
     }
 
+    /**
+     * Renames a file. Folders are renamed by a job, see {@link #submitFolderRename}.
+     */
     public void rename(Long userId, String newName, String path) {
+        String newPath = buildNewPath(path, newName);
+        String sourcePath = getFullPath(userId, path);
+        String destinationPath = getFullPath(userId, newPath);
+
+        try {
+            checkRenameDestination(userId, sourcePath, destinationPath);
+            minioRepository.copy(bucketName, destinationPath, sourcePath);
+
+            searchIndexService.onRenamed(userId, path, newPath);
+            listingCache.invalidate(userId, newPath);
+            // the copy replaces the source, so the usage stays the same
+            deleteObjects(userId, path);
+        } catch (ObjectNotFoundException e) {
+            log.warn("No object found to rename for user '{}', bucket '{}', from '{}' to '{}'", userId, bucketName, sourcePath, destinationPath, e);
+            throw new FileStorageException(String.format("Unable to rename '%s' because it does not exist", getObjectName(path)));
+        } catch (MinioOperationException e) {
+            log.error("Error while rename object for user '{}', bucket '{}', from '{}' to '{}'",
+                    userId, bucketName, sourcePath, destinationPath, e);
+            throw new FileStorageException("Unable to rename: " + getObjectName(path));
+        }
+    }
+
+    /**
+     * Checks that the folder can be renamed and queues the rename as a job, so that the time to respond does not
+     * depend on the folder size.
+     *
+     * @return the id of the job
+     */
+    public String submitFolderRename(Long userId, String newName, String path) {
         String sourcePath = getFullPath(userId, path);
         String destinationPath = getFullPath(userId, buildNewPath(path, newName));
 
         try {
             // potential race condition, but we accept it
-            if (isObjectExists(bucketName, destinationPath)) {
-                log.info("File or folder already exists when renaming from '{}' to '{}' for user '{}', bucket '{}'",
-                        sourcePath, destinationPath, userId, bucketName);
-                throw new FileStorageException("There is already a file or folder with name you specified. Specify a different name");
+            if (!minioRepository.isObjectExists(bucketName, sourcePath)) {
+                log.warn("No folder found to rename for user '{}', bucket '{}', path '{}'", userId, bucketName, sourcePath);
+                throw new FileStorageException(String.format("Unable to rename '%s' because it does not exist", getObjectName(path)));
             }
 
-            if (isFolder(path)) {
-                minioRepository.copyAll(bucketName, destinationPath, sourcePath);
-            } else {
-                minioRepository.copy(bucketName, destinationPath, sourcePath);
+            checkRenameDestination(userId, sourcePath, destinationPath);
+
+            return jobRepository.enqueue(JobType.RENAME_FOLDER, userId, path, newName, JobPhase.COPY);
+        } catch (MinioOperationException | DataAccessException e) {
+            log.error("Error while submitting rename for user '{}', bucket '{}', from '{}' to '{}'",
+                    userId, bucketName, sourcePath, destinationPath, e);
+            throw new FileStorageException("Unable to rename: " + getObjectName(path));
+        }
+    }
+
+    /**
+     * Renames a folder as a job. The folder is copied in parallel with its progress reported to the job, and then
+     * deleted. When the job is resumed, objects that were copied already are skipped, and a folder that was
+     * deleted already is left as is.
+     */
+    public void renameFolder(Long userId, String newName, String path, JobContext context) {
+        String newPath = buildNewPath(path, newName);
+        String sourcePath = getFullPath(userId, path);
+        String destinationPath = getFullPath(userId, newPath);
+
+        try {
+            if (context.getPhase() == JobPhase.COPY) {
+                minioRepository.copyAll(bucketName, destinationPath, sourcePath, context.getProgressListener());
+
+                searchIndexService.onRenamed(userId, path, newPath);
+                listingCache.invalidate(userId, newPath);
+                context.checkpoint(JobPhase.DELETE);
             }
 
-            delete(userId, path);
+            // the copy replaces the source, so the usage stays the same
+            if (!context.isResumed() || minioRepository.isObjectExists(bucketName, sourcePath)) {
+                deleteObjects(userId, path);
+            }
         } catch (ObjectNotFoundException e) {
             log.warn("No object found to rename for user '{}', bucket '{}', from '{}' to '{}'", userId, bucketName, sourcePath, destinationPath, e);
             throw new FileStorageException(String.format("Unable to rename '%s' because it does not exist", getObjectName(path)));
@@ -248,14 +562,92 @@ public class FileStorageService {
     }
 
     public void delete(Long userId, String path) {
+        MinioObjectsSummary deleted = deleteObjects(userId, path);
+        storageUsageService.recordRemoved(userId, deleted.count(), deleted.bytes());
+    }
+
+    /**
+     * Checks that the folder exists and queues its deletion as a job.
+     *
+     * @return the id of the job
+     */
+    public String submitFolderDelete(Long userId, String path) {
         String fullPath = getFullPath(userId, path);
 
         try {
-            if (isFolder(path)) {
-                minioRepository.deleteAll(bucketName, fullPath);
-            } else {
-                minioRepository.delete(bucketName, fullPath);
+            // potential race condition, but we accept it
+            if (!minioRepository.isObjectExists(bucketName, fullPath)) {
+                log.warn("No folder found to delete for user '{}', bucket '{}', path '{}'", userId, bucketName, fullPath);
+                throw new FileStorageException(String.format("Unable to delete '%s' because it does not exist", getObjectName(path)));
             }
+
+            return jobRepository.enqueue(JobType.DELETE_FOLDER, userId, path, null, JobPhase.DELETE);
+        } catch (MinioOperationException | DataAccessException e) {
+            log.error("Error while submitting deletion for user '{}', bucket '{}', path '{}'", userId, bucketName, fullPath, e);
+            throw new FileStorageException("Unable to delete: " + getObjectName(path));
+        }
+    }
+
+    /**
+     * Deletes a folder as a job. When the job is resumed, objects deleted already are not counted as removed
+     * from the usage, which is left to the reconciliation to correct.
+     */
+    public void deleteFolder(Long userId, String path, JobContext context) {
+        try {
+            if (context.isResumed() && !minioRepository.isObjectExists(bucketName, getFullPath(userId, path))) {
+                return;
+            }
+        } catch (MinioOperationException e) {
+            log.error("Error while checking folder to delete for user '{}', bucket '{}', path '{}'",
+                    userId, bucketName, getFullPath(userId, path), e);
+            throw new FileStorageException("Unable to delete: " + getObjectName(path));
+        }
+
+        delete(userId, path);
+    }
+
+    /**
+     * Measures the storage of the user and corrects the usage counters.
+     *
+     * @return {@code false} if the usage changed during the measurement and was left as is
+     */
+    public boolean reconcileUsage(Long userId) {
+        String userRootPath = getFullPath(userId, DELIMITER);
+
+        try {
+            StorageUsageDto usage = storageUsageService.getUsage(userId);
+            MinioObjectsSummary measured = minioRepository.summarize(bucketName, userRootPath);
+
+            return storageUsageService.reconcile(userId, usage, measured.count(), measured.bytes());
+        } catch (MinioOperationException e) {
+            log.error("Error while measuring storage usage for user '{}', bucket '{}', path '{}'",
+                    userId, bucketName, userRootPath, e);
+            throw new FileStorageException("Unable to measure storage usage");
+        }
+    }
+
+    private void checkRenameDestination(Long userId, String sourcePath, String destinationPath) {
+        // potential race condition, but we accept it
+        if (isObjectExists(bucketName, destinationPath)) {
+            log.info("File or folder already exists when renaming from '{}' to '{}' for user '{}', bucket '{}'",
+                    sourcePath, destinationPath, userId, bucketName);
+            throw new FileStorageException("There is already a file or folder with name you specified. Specify a different name");
+        }
+    }
+
+    private MinioObjectsSummary deleteObjects(Long userId, String path) {
+        String fullPath = getFullPath(userId, path);
+
+        try {
+            MinioObjectsSummary deleted = isFolder(path)
+                    ? minioRepository.deleteAll(bucketName, fullPath)
+                    : minioRepository.delete(bucketName, fullPath);
+
+            searchIndexService.onDeleted(userId, path);
+            listingCache.invalidate(userId, path);
+            thumbnailService.delete(fullPath);
+
+            return deleted;
         } catch (ObjectNotFoundException e) {
             log.warn("No objects found to delete for user '{}', bucket '{}', path '{}'", userId, bucketName, fullPath, e);
             throw new FileStorageException(String.format("Unable to delete '%s' because it does not exist", getObjectName(path)));
@@ -265,6 +657,112 @@ public class FileStorageService {
         }
     }
 
+    private void writeFolderAsZip(Long userId, String path, OutputStream outputStream) {
+        String userRoot = getUserRoot(userId);
+        String fullPath = getFullPath(userId, path);
+
+        try (PrefetchingObjectIterator objects = minioRepository.getAll(bucketName, fullPath)) {
+            if (parallelZipFactory.isEnabled()) {
+                writeParallelZip(objects, userRoot + getParentPath(path), outputStream);
+            } else {
+                writeZip(objects, userRoot + getParentPath(path), outputStream);
+            }
+        } catch (ObjectNotFoundException e) {
+            log.warn("Folder not found to download for user '{}', bucket '{}', path '{}'", userId, bucketName, fullPath, e);
+            throw new FileStorageException(
+                    String.format("Unable to download folder '%s' because it does not exist", getFolderName(path))
+            );
+        } catch (MinioOperationException | IOException e) {
+            log.error("Error while downloading folder as zip for user '{}', bucket '{}', path '{}'",
+                    userId, bucketName, fullPath, e);
+            throw new FileStorageException("Unable to download folder: " + getFolderName(path));
+        }
+    }
+
+    private void writeZip(PrefetchingObjectIterator objects, String basePath, OutputStream outputStream) throws IOException {
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(StreamUtils.nonClosing(outputStream))) {
+            while (objects.hasNext()) {
+                MinioObject object = objects.next();
+
+                try (InputStream inputStream = object.inputStream()) {
+                    String relativeObjectPath = getRelativePath(object.name(), basePath);
+
+                    zipOutputStream.setLevel(zipCompressionPolicy.getLevel(relativeObjectPath, object.contentType()));
+                    zipOutputStream.putNextEntry(new ZipEntry(relativeObjectPath));
+                    inputStream.transferTo(zipOutputStream);
+                    zipOutputStream.closeEntry();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the same archive as {@link #writeZip}, but compresses the entries on all cores.
+     */
+    private void writeParallelZip(PrefetchingObjectIterator objects, String basePath, OutputStream outputStream) throws IOException {
+        try (ParallelZipOutputStream zipOutputStream = parallelZipFactory.create(StreamUtils.nonClosing(outputStream))) {
+            while (objects.hasNext()) {
+                MinioObject object = objects.next();
+
+                try (InputStream inputStream = object.inputStream()) {
+                    String relativeObjectPath = getRelativePath(object.name(), basePath);
+
+                    zipOutputStream.putNextEntry(relativeObjectPath,
+                            zipCompressionPolicy.getLevel(relativeObjectPath, object.contentType()));
+                    inputStream.transferTo(zipOutputStream);
+                    zipOutputStream.closeEntry();
+                }
+            }
+        }
+    }
+
+    private UploadResultDto uploadFile(Long userId, MultipartFile file, String path) {
+        String fileName = file.getOriginalFilename();
+        String fullPath = getFullPath(userId, path + fileName);
+
+        try {
+            minioRepository.save(bucketName, fullPath, file, file.getSize(), file.getContentType());
+            searchIndexService.onSaved(userId, path + fileName);
+            listingCache.invalidate(userId, path + fileName);
+
+            storageUsageService.recordAdded(userId, 1, file.getSize());
+            thumbnailService.generateAsync(fullPath);
+
+            return UploadResultDto.success(fileName);
+        } catch (MinioOperationException e) {
+            log.error("Error while uploading file '{}' for user '{}', bucket '{}', path '{}'",
+                    fileName, userId, bucketName, fullPath, e);
+            return UploadResultDto.failure(fileName, "Unable to upload file");
+        }
+    }
+
+    private Set<String> listObjectNames(String fullFolderPath) {
+        Set<String> objectNames = new HashSet<>();
+
+        for (MinioObjectDto minioObject : minioRepository.list(bucketName, fullFolderPath, false)) {
+            objectNames.add(minioObject.name());
+        }
+
+        return objectNames;
+    }
+
+    private <T> T readFile(Long userId, String path, Function<String, T> reader) {
+        String fullPath = getFullPath(userId, path);
+
+        try {
+            return reader.apply(fullPath);
+        } catch (ObjectNotFoundException e) {
+            log.warn("File not found to download '{}' for user '{}', bucket '{}'", fullPath, userId, bucketName, e);
+            throw new FileStorageException(
+                    String.format("Unable to download file '%s' because it does not exist", getFileName(path))
+            );
+        } catch (MinioOperationException e) {
+            log.error("Error while downloading file for user '{}', bucket '{}', path '{}'",
+                    userId, bucketName, fullPath, e);
+            throw new FileStorageException("Unable to download file: " + getFileName(path));
+        }
+    }
+
     private String getFullPath(Long userId, String path) {
         return getUserRoot(userId) + path;
     }
@@ -273,6 +771,46 @@ public class FileStorageService {
         return String.format(userRootFormat, userId);
     }
 
+    private UploadSession getUploadSession(Long userId, String uploadSessionId) {
+        return uploadSessionRepository.findById(uploadSessionId)
+                .filter(session -> session.userId().equals(userId))
+                .orElseThrow(() -> new ObjectNotFoundException("Upload not found"));
+    }
+
+    /**
+     * Uses the configured part size unless the file needs more parts than S3 allows, kept within the part sizes
+     * S3 accepts.
+     */
+    private long getUploadPartSize(long size) {
+        long partSize = uploadPartSize.toBytes();
+        long minPartSize = (size + MAX_UPLOAD_PARTS - 1) / MAX_UPLOAD_PARTS;
+
+        return Math.clamp(Math.max(partSize, minPartSize), MIN_UPLOAD_PART_SIZE, MAX_UPLOAD_PART_SIZE);
+    }
+
+    /**
+     * Builds the tree of all files and folders of the user, including the folders that exist only as the parents
+     * of files.
+     */
+    private PathTree buildPathTree(Long userId) {
+        String userRoot = getUserRoot(userId);
+        List<MinioObjectDto> minioObjects = minioRepository.list(bucketName, getFullPath(userId, DELIMITER), true);
+
+        return PathTree.build(minioObjects.stream()
+                .map(minioObject -> getRelativePath(minioObject.name(), userRoot))
+                .toList());
+    }
+
+    private ObjectResponseDto toSearchResult(String objectPath) {
+        boolean isFolder = isFolder(objectPath);
+
+        return ObjectResponseDto.builder()
+                .name(getObjectName(objectPath))
+                .path(isFolder ? objectPath : getParentFolderPath(objectPath))
+                .isFolder(isFolder)
+                .build();
+    }
+
     private boolean isObjectExists(String bucketName, String path) {
         if (minioRepository.isObjectExists(bucketName, path)) {
             return true;
@@ -293,7 +831,22 @@ public class FileStorageService {
         return minioRepository.isObjectExists(bucketName, fullPath);
     }
 
-    private void sortObjects(List<ObjectResponseDto> userObjects) {
+    private String encodeCursor(String relativePath) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(relativePath.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ObjectNotFoundException("Invalid listing cursor");
+        }
+    }
+
+    /**
+     * Sorts folders before files, each by path ignoring case. Package-private for benchmarks.
+     */
+    static void sortObjects(List<ObjectResponseDto> userObjects) {
         userObjects.sort((o1, o2) -> {
             boolean isFolder1 = isFolder(o1.getPath());
             boolean isFolder2 = isFolder(o2.getPath());
@@ -0,0 +1,13 @@
+package com.asalavei.cloudfilestorage.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Value
+public class ObjectPageResponseDto {
+    List<ObjectResponseDto> objects;
+    String nextCursor;
+}
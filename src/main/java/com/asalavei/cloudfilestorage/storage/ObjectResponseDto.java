@@ -11,4 +11,9 @@ public class ObjectResponseDto {
     String name;
     String path;
     Boolean isFolder;
+
+    /**
+     * Identifies the current thumbnail of a file, or {@code null} if the file has none.
+     */
+    Long thumbnailVersion;
 }
@@ -0,0 +1,19 @@
+package com.asalavei.cloudfilestorage.storage;
+
+import java.io.Serializable;
+
+/**
+ * Result of one file of a batch upload. Serializable, since it is passed to the next page as a flash attribute.
+ *
+ * @param message the reason of a failure, or {@code null} if the file was uploaded
+ */
+public record UploadResultDto(String fileName, boolean uploaded, String message) implements Serializable {
+
+    public static UploadResultDto success(String fileName) {
+        return new UploadResultDto(fileName, true, null);
+    }
+
+    public static UploadResultDto failure(String fileName, String message) {
+        return new UploadResultDto(fileName, false, message);
+    }
+}
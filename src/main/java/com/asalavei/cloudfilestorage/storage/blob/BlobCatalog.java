@@ -0,0 +1,220 @@
+package com.asalavei.cloudfilestorage.storage.blob;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static com.asalavei.cloudfilestorage.util.PathUtil.toPrefixPattern;
+
+/**
+ * Reference counts of deduplicated content, kept in PostgreSQL.
+ * <p>
+ * Each distinct content is stored once as a blob named after its SHA-256 hash, and every object path holding that
+ * content references it. A blob is acquired before a new reference to it is recorded and released after a
+ * reference is removed. A blob whose count drops to zero is removed only under a row lock, so an upload
+ * acquiring it concurrently either keeps it alive or waits and uploads the content again.
+ * <p>
+ * Paths without a reference are plain objects, stored before deduplication was enabled or by multipart uploads.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BlobCatalog {
+
+    private final BlobRepository blobRepository;
+    private final BlobReferenceRepository blobReferenceRepository;
+
+    @Value("${storage.dedup.enabled}")
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Optional<String> findHash(String bucket, String path) {
+        return blobReferenceRepository.findByBucketAndPath(bucket, path)
+                .map(BlobReference::getHash);
+    }
+
+    /**
+     * @return hashes of the given paths that reference a blob
+     */
+    public Map<String, String> findHashes(String bucket, Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return Map.of();
+        }
+
+        return blobReferenceRepository.findAllByBucketAndPathIn(bucket, paths).stream()
+                .collect(Collectors.toMap(BlobReference::getPath, BlobReference::getHash));
+    }
+
+    /**
+     * @return the total size of the content referenced by the paths under the prefix, counting shared blobs once
+     * per path
+     */
+    public long sumReferencedBytes(String bucket, String prefix) {
+        return blobReferenceRepository.sumSizeByPathPattern(bucket, toPrefixPattern(prefix));
+    }
+
+    /**
+     * Takes a reference to an existing blob, keeping it from being removed.
+     *
+     * @return {@code false} if there is no such blob and its content has to be uploaded
+     */
+    @Transactional
+    public boolean acquire(String bucket, String hash) {
+        return blobRepository.acquire(bucket, hash) > 0;
+    }
+
+    /**
+     * Gives back a reference taken by {@link #acquire} that was not recorded.
+     */
+    @Transactional
+    public void release(String bucket, String hash) {
+        blobRepository.release(bucket, hash);
+    }
+
+    /**
+     * Records a blob uploaded for a save that failed before referencing it, so that it can be removed like any
+     * other unreferenced blob. A blob recorded meanwhile by a save of the same content is left as it is.
+     */
+    @Transactional
+    public void recordUnreferenced(String bucket, String hash, long size) {
+        blobRepository.insertUnreferencedIfAbsent(bucket, hash, size);
+    }
+
+    /**
+     * Records that the path references the blob.
+     *
+     * @param acquired whether the blob has already been acquired for this path
+     * @return the hash of the blob the path referenced before, if any; it has been released
+     */
+    @Transactional
+    public Optional<String> recordSave(String bucket, String path, String hash, long size, boolean acquired) {
+        if (!acquired) {
+            blobRepository.insertOrAcquire(bucket, hash, size);
+        }
+
+        Optional<BlobReference> existingReference = blobReferenceRepository.findByBucketAndPath(bucket, path);
+
+        if (existingReference.isEmpty()) {
+            blobReferenceRepository.save(BlobReference.builder()
+                    .bucket(bucket)
+                    .path(path)
+                    .hash(hash)
+                    .build());
+            return Optional.empty();
+        }
+
+        BlobReference reference = existingReference.get();
+        String previousHash = reference.getHash();
+        reference.setHash(hash);
+        blobRepository.release(bucket, previousHash);
+
+        return Optional.of(previousHash);
+    }
+
+    @Transactional
+    public void recordCopy(String bucket, String destinationPath, String sourcePath) {
+        Optional<String> hash = findHash(bucket, sourcePath);
+
+        if (hash.isPresent() && blobReferenceRepository.insertIfAbsent(bucket, destinationPath, hash.get()) > 0) {
+            blobRepository.acquire(bucket, hash.get());
+        }
+    }
+
+    /**
+     * Records that the paths under the destination prefix reference the blobs of the source paths. References
+     * that already exist are kept, so a copy that is resumed is not counted twice.
+     */
+    @Transactional
+    public void recordCopyAll(String bucket, String destinationPrefix, String sourcePrefix) {
+        int acquired = blobReferenceRepository.copyAllAndAcquire(bucket, destinationPrefix, sourcePrefix.length(),
+                toPrefixPattern(sourcePrefix));
+
+        log.debug("Acquired {} blobs copying references from '{}' to '{}' in bucket '{}'", acquired, sourcePrefix, destinationPrefix, bucket);
+    }
+
+    /**
+     * @return the hash of the released blob, if the path referenced one
+     */
+    @Transactional
+    public Optional<String> recordDelete(String bucket, String path) {
+        Optional<String> hash = findHash(bucket, path);
+
+        hash.ifPresent(releasedHash -> {
+            blobReferenceRepository.deleteByBucketAndPath(bucket, path);
+            blobRepository.release(bucket, releasedHash);
+        });
+
+        return hash;
+    }
+
+    /**
+     * @return hashes of the released blobs
+     */
+    @Transactional
+    public List<String> recordDeleteAll(String bucket, String prefix) {
+        String pattern = toPrefixPattern(prefix);
+        List<String> hashes = blobReferenceRepository.findHashesByPathPattern(bucket, pattern);
+
+        if (!hashes.isEmpty()) {
+            blobRepository.releaseAllByPathPattern(bucket, pattern);
+            blobReferenceRepository.deleteAllByPathPattern(bucket, pattern);
+        }
+
+        return hashes;
+    }
+
+    /**
+     * @return hashes of the blobs released by deleting the paths
+     */
+    @Transactional
+    public List<String> recordDeleteAll(String bucket, Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return List.of();
+        }
+
+        List<BlobReference> references = blobReferenceRepository.findAllByBucketAndPathIn(bucket, paths);
+
+        for (BlobReference reference : references) {
+            blobRepository.release(bucket, reference.getHash());
+        }
+
+        blobReferenceRepository.deleteAllInBatch(references);
+
+        return references.stream()
+                .map(BlobReference::getHash)
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * Removes the blob if nothing references it anymore. The content is removed by {@code remover} while the
+     * row of the blob is locked; if the remover fails, the blob is kept with a zero count and can be acquired again.
+     *
+     * @return whether the blob was removed
+     */
+    @Transactional
+    public boolean removeIfUnreferenced(String bucket, String hash, Consumer<String> remover) {
+        Optional<Long> refCount = blobRepository.findRefCountForUpdate(bucket, hash);
+
+        if (refCount.isEmpty() || refCount.get() > 0) {
+            return false;
+        }
+
+        remover.accept(hash);
+        blobRepository.deleteByBucketAndHash(bucket, hash);
+
+        return true;
+    }
+}
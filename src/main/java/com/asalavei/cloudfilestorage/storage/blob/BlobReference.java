@@ -0,0 +1,39 @@
+package com.asalavei.cloudfilestorage.storage.blob;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+@Builder
+@Entity
+@Table(name = "blob_references")
+public class BlobReference {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "bucket", length = 63, nullable = false)
+    private String bucket;
+
+    @Column(name = "path", length = 1024, nullable = false)
+    private String path;
+
+    @Column(name = "hash", length = 64, nullable = false)
+    private String hash;
+}
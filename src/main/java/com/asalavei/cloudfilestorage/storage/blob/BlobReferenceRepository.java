@@ -0,0 +1,70 @@
+package com.asalavei.cloudfilestorage.storage.blob;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface BlobReferenceRepository extends JpaRepository<BlobReference, Long> {
+
+    Optional<BlobReference> findByBucketAndPath(String bucket, String path);
+
+    List<BlobReference> findAllByBucketAndPathIn(String bucket, Collection<String> paths);
+
+    @Query(value = "SELECT DISTINCT hash FROM blob_references WHERE bucket = :bucket AND path LIKE :pattern",
+            nativeQuery = true)
+    List<String> findHashesByPathPattern(@Param("bucket") String bucket, @Param("pattern") String pattern);
+
+    @Query(value = """
+            SELECT COALESCE(SUM(blobs.size), 0)
+            FROM blob_references
+            JOIN blobs ON blobs.bucket = blob_references.bucket AND blobs.hash = blob_references.hash
+            WHERE blob_references.bucket = :bucket AND blob_references.path LIKE :pattern
+            """, nativeQuery = true)
+    long sumSizeByPathPattern(@Param("bucket") String bucket, @Param("pattern") String pattern);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO blob_references (bucket, path, hash)
+            VALUES (:bucket, :path, :hash)
+            ON CONFLICT (bucket, path) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("bucket") String bucket, @Param("path") String path, @Param("hash") String hash);
+
+    /**
+     * Copies the references and acquires the blobs of those that did not exist yet, so copying again is a no-op.
+     *
+     * @return the number of acquired blobs
+     */
+    @Modifying
+    @Query(value = """
+            WITH copied AS (
+                INSERT INTO blob_references (bucket, path, hash)
+                SELECT bucket, :destinationPrefix || substr(path, :sourcePrefixLength + 1), hash
+                FROM blob_references
+                WHERE bucket = :bucket AND path LIKE :sourcePattern
+                ON CONFLICT (bucket, path) DO NOTHING
+                RETURNING hash
+            )
+            UPDATE blobs
+            SET ref_count = blobs.ref_count + referenced.count
+            FROM (SELECT hash, count(*) AS count
+                  FROM copied
+                  GROUP BY hash) referenced
+            WHERE blobs.bucket = :bucket AND blobs.hash = referenced.hash
+            """, nativeQuery = true)
+    int copyAllAndAcquire(@Param("bucket") String bucket, @Param("destinationPrefix") String destinationPrefix,
+                @Param("sourcePrefixLength") int sourcePrefixLength, @Param("sourcePattern") String sourcePattern);
+
+    @Modifying
+    @Query(value = "DELETE FROM blob_references WHERE bucket = :bucket AND path = :path", nativeQuery = true)
+    void deleteByBucketAndPath(@Param("bucket") String bucket, @Param("path") String path);
+
+    @Modifying
+    @Query(value = "DELETE FROM blob_references WHERE bucket = :bucket AND path LIKE :pattern", nativeQuery = true)
+    void deleteAllByPathPattern(@Param("bucket") String bucket, @Param("pattern") String pattern);
+}
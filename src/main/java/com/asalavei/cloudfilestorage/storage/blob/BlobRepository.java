@@ -0,0 +1,55 @@
+package com.asalavei.cloudfilestorage.storage.blob;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface BlobRepository extends JpaRepository<Blob, Long> {
+
+    @Query(value = "SELECT ref_count FROM blobs WHERE bucket = :bucket AND hash = :hash FOR UPDATE", nativeQuery = true)
+    Optional<Long> findRefCountForUpdate(@Param("bucket") String bucket, @Param("hash") String hash);
+
+    @Modifying
+    @Query(value = "UPDATE blobs SET ref_count = ref_count + 1 WHERE bucket = :bucket AND hash = :hash", nativeQuery = true)
+    int acquire(@Param("bucket") String bucket, @Param("hash") String hash);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO blobs (bucket, hash, size, ref_count)
+            VALUES (:bucket, :hash, :size, 1)
+            ON CONFLICT (bucket, hash) DO UPDATE
+            SET ref_count = blobs.ref_count + 1
+            """, nativeQuery = true)
+    void insertOrAcquire(@Param("bucket") String bucket, @Param("hash") String hash, @Param("size") long size);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO blobs (bucket, hash, size, ref_count)
+            VALUES (:bucket, :hash, :size, 0)
+            ON CONFLICT (bucket, hash) DO NOTHING
+            """, nativeQuery = true)
+    void insertUnreferencedIfAbsent(@Param("bucket") String bucket, @Param("hash") String hash, @Param("size") long size);
+
+    @Modifying
+    @Query(value = "UPDATE blobs SET ref_count = ref_count - 1 WHERE bucket = :bucket AND hash = :hash", nativeQuery = true)
+    void release(@Param("bucket") String bucket, @Param("hash") String hash);
+
+    @Modifying
+    @Query(value = """
+            UPDATE blobs
+            SET ref_count = blobs.ref_count - referenced.count
+            FROM (SELECT hash, count(*) AS count
+                  FROM blob_references
+                  WHERE bucket = :bucket AND path LIKE :pattern
+                  GROUP BY hash) referenced
+            WHERE blobs.bucket = :bucket AND blobs.hash = referenced.hash
+            """, nativeQuery = true)
+    void releaseAllByPathPattern(@Param("bucket") String bucket, @Param("pattern") String pattern);
+
+    @Modifying
+    @Query(value = "DELETE FROM blobs WHERE bucket = :bucket AND hash = :hash", nativeQuery = true)
+    void deleteByBucketAndHash(@Param("bucket") String bucket, @Param("hash") String hash);
+}
@@ -0,0 +1,203 @@
+package com.asalavei.cloudfilestorage.storage.catalog;
+
+import com.asalavei.cloudfilestorage.util.PathUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static com.asalavei.cloudfilestorage.util.PathUtil.DELIMITER;
+import static com.asalavei.cloudfilestorage.util.PathUtil.toPrefixPattern;
+
+/**
+ * Catalog of object metadata kept in PostgreSQL next to the objects stored in MinIO.
+ * <p>
+ * Listings and existence checks are served from the indexed {@code (bucket, parent_path)} columns instead of
+ * S3 round trips. Object keys start with the user root, so every folder query stays within one user's rows.
+ * Folders that exist in MinIO only implicitly, as a common prefix of their children, are recorded as implicit rows
+ * of their own. Like the prefix in MinIO, such a row is removed together with the last child of the folder.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ObjectCatalog {
+
+    private final ObjectMetadataRepository objectMetadataRepository;
+
+    @Value("${storage.catalog.enabled}")
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isEmpty(String bucket) {
+        return !objectMetadataRepository.existsByBucket(bucket);
+    }
+
+    public boolean exists(String bucket, String path) {
+        return objectMetadataRepository.existsByBucketAndPath(bucket, path);
+    }
+
+    public Optional<Instant> findLastModified(String bucket, String path) {
+        return objectMetadataRepository.findByBucketAndPath(bucket, path)
+                .map(ObjectMetadata::getLastModified);
+    }
+
+    public List<ObjectMetadata> list(String bucket, String prefix, boolean recursive) {
+        if (recursive) {
+            return objectMetadataRepository.findAllByPathPattern(bucket, toPrefixPattern(prefix));
+        }
+
+        return objectMetadataRepository.findAllByBucketAndParentPathOrderByPath(bucket, prefix);
+    }
+
+    /**
+     * @return at most {@code limit} direct children of the folder, in path order, following {@code startAfter}
+     */
+    public List<ObjectMetadata> list(String bucket, String folderPath, String startAfter, int limit) {
+        return objectMetadataRepository.findByBucketAndParentPathAndPathGreaterThanOrderByPath(
+                bucket, folderPath, startAfter == null ? "" : startAfter, Limit.of(limit));
+    }
+
+    @Transactional
+    public void recordSave(String bucket, String path, long size, String contentType, Instant lastModified) {
+        if (!enabled) {
+            return;
+        }
+
+        insertParentFolders(bucket, path, lastModified);
+        objectMetadataRepository.upsert(bucket, path, PathUtil.getParentPath(path), size, contentType, lastModified);
+    }
+
+    /**
+     * Records a save before the content is written to MinIO, so that stored content is never missing from the
+     * catalog. If the write fails, the record is undone with {@link #revertSave}.
+     *
+     * @return the metadata of the path before the save, if it existed
+     */
+    @Transactional
+    public Optional<ObjectMetadata> recordPendingSave(String bucket, String path, long size, String contentType,
+                                                      Instant lastModified) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        Optional<ObjectMetadata> previous = objectMetadataRepository.findByBucketAndPath(bucket, path);
+        recordSave(bucket, path, size, contentType, lastModified);
+
+        return previous;
+    }
+
+    /**
+     * Restores the metadata the path had before a save that failed, or removes the path if it did not exist.
+     */
+    @Transactional
+    public void revertSave(String bucket, String path, ObjectMetadata previous) {
+        if (!enabled) {
+            return;
+        }
+
+        if (previous == null || previous.getImplicit()) {
+            objectMetadataRepository.deleteByBucketAndPath(bucket, path);
+        }
+
+        if (previous == null) {
+            deleteEmptyParentFolders(bucket, path);
+        } else if (previous.getImplicit()) {
+            objectMetadataRepository.insertFolderIfAbsent(bucket, path, previous.getParentPath(), previous.getLastModified());
+        } else {
+            objectMetadataRepository.upsert(bucket, path, previous.getParentPath(), previous.getSize(),
+                    previous.getContentType(), previous.getLastModified());
+        }
+    }
+
+    @Transactional
+    public void recordCopy(String bucket, String destinationPath, String sourcePath) {
+        if (!enabled) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        insertParentFolders(bucket, destinationPath, now);
+
+        int copied = objectMetadataRepository.copy(bucket, destinationPath, PathUtil.getParentPath(destinationPath),
+                sourcePath, now);
+
+        if (copied == 0) {
+            log.warn("Object '{}' copied to '{}' in bucket '{}' is missing from the catalog", sourcePath, destinationPath, bucket);
+        }
+    }
+
+    @Transactional
+    public void recordCopyAll(String bucket, String destinationPrefix, String sourcePrefix) {
+        if (!enabled) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        insertParentFolders(bucket, destinationPrefix, now);
+
+        int copied = objectMetadataRepository.copyAll(bucket, destinationPrefix, PathUtil.getParentPath(destinationPrefix),
+                sourcePrefix, sourcePrefix.length(), toPrefixPattern(sourcePrefix), now);
+
+        if (copied == 0) {
+            log.warn("Objects copied from '{}' to '{}' in bucket '{}' are missing from the catalog", sourcePrefix, destinationPrefix, bucket);
+        }
+    }
+
+    @Transactional
+    public void recordDelete(String bucket, String path) {
+        if (enabled) {
+            objectMetadataRepository.deleteByBucketAndPath(bucket, path);
+            deleteEmptyParentFolders(bucket, path);
+        }
+    }
+
+    /**
+     * Records the deletion of some of the objects under a folder. Parent folders are left to
+     * {@link #recordDeleteAll(String, String)} once the whole folder is deleted.
+     */
+    @Transactional
+    public void recordDeleteAll(String bucket, Collection<String> paths) {
+        if (enabled && !paths.isEmpty()) {
+            objectMetadataRepository.deleteAllByBucketAndPathIn(bucket, paths);
+        }
+    }
+
+    @Transactional
+    public void recordDeleteAll(String bucket, String prefix) {
+        if (enabled) {
+            objectMetadataRepository.deleteAllByPathPattern(bucket, toPrefixPattern(prefix));
+            deleteEmptyParentFolders(bucket, prefix);
+        }
+    }
+
+    /**
+     * Removes the implicit parent folders of a deleted path that no longer have children, deepest first.
+     */
+    private void deleteEmptyParentFolders(String bucket, String path) {
+        String folderPath = PathUtil.getParentPath(path);
+
+        while (!folderPath.isEmpty() && objectMetadataRepository.deleteFolderIfImplicitAndEmpty(bucket, folderPath) > 0) {
+            folderPath = PathUtil.getParentPath(folderPath);
+        }
+    }
+
+    private void insertParentFolders(String bucket, String path, Instant lastModified) {
+        int end = path.indexOf(DELIMITER);
+
+        while (end >= 0 && end < path.length() - 1) {
+            String folderPath = path.substring(0, end + 1);
+            objectMetadataRepository.insertFolderIfAbsent(bucket, folderPath, PathUtil.getParentPath(folderPath), lastModified);
+            end = path.indexOf(DELIMITER, end + 1);
+        }
+    }
+}
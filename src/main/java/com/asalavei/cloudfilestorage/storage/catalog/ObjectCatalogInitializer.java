@@ -0,0 +1,36 @@
+package com.asalavei.cloudfilestorage.storage.catalog;
+
+import com.asalavei.cloudfilestorage.storage.minio.MinioRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Populates an empty catalog from the bucket contents, so objects stored before the catalog was introduced
+ * are listed as well.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ObjectCatalogInitializer {
+
+    private final ObjectCatalog objectCatalog;
+    private final MinioRepository minioRepository;
+
+    @Value("${minio.bucket.name}")
+    private String bucketName;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void importExistingObjects() {
+        if (!objectCatalog.isEnabled() || !objectCatalog.isEmpty(bucketName)) {
+            return;
+        }
+
+        log.info("Object catalog is empty, importing objects from bucket '{}'", bucketName);
+        long imported = minioRepository.importIntoCatalog(bucketName);
+        log.info("Imported {} objects from bucket '{}' into the object catalog", imported, bucketName);
+    }
+}
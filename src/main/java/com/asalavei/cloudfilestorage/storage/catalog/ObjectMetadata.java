@@ -0,0 +1,56 @@
+package com.asalavei.cloudfilestorage.storage.catalog;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+@Builder
+@Entity
+@Table(name = "object_metadata")
+public class ObjectMetadata {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "bucket", length = 63, nullable = false)
+    private String bucket;
+
+    @Column(name = "path", length = 1024, nullable = false)
+    private String path;
+
+    @Column(name = "parent_path", length = 1024, nullable = false)
+    private String parentPath;
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "last_modified", nullable = false)
+    private Instant lastModified;
+
+    /**
+     * Whether the row is a folder that exists in MinIO only as the common prefix of its children.
+     */
+    @Column(name = "implicit", nullable = false)
+    private Boolean implicit;
+}
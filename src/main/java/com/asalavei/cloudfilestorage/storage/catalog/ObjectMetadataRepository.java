@@ -0,0 +1,109 @@
+package com.asalavei.cloudfilestorage.storage.catalog;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ObjectMetadataRepository extends JpaRepository<ObjectMetadata, Long> {
+
+    List<ObjectMetadata> findAllByBucketAndParentPathOrderByPath(String bucket, String parentPath);
+
+    List<ObjectMetadata> findByBucketAndParentPathAndPathGreaterThanOrderByPath(String bucket, String parentPath,
+                                                                               String path, Limit limit);
+
+    Optional<ObjectMetadata> findByBucketAndPath(String bucket, String path);
+
+    boolean existsByBucketAndPath(String bucket, String path);
+
+    boolean existsByBucket(String bucket);
+
+    @Query(value = "SELECT * FROM object_metadata WHERE bucket = :bucket AND path LIKE :pattern ORDER BY path",
+            nativeQuery = true)
+    List<ObjectMetadata> findAllByPathPattern(@Param("bucket") String bucket, @Param("pattern") String pattern);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO object_metadata (bucket, path, parent_path, size, content_type, last_modified)
+            VALUES (:bucket, :path, :parentPath, :size, :contentType, :lastModified)
+            ON CONFLICT (bucket, path) DO UPDATE
+            SET size = EXCLUDED.size, content_type = EXCLUDED.content_type, last_modified = EXCLUDED.last_modified,
+                implicit = FALSE
+            """, nativeQuery = true)
+    void upsert(@Param("bucket") String bucket, @Param("path") String path, @Param("parentPath") String parentPath,
+                @Param("size") long size, @Param("contentType") String contentType,
+                @Param("lastModified") Instant lastModified);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO object_metadata (bucket, path, parent_path, size, last_modified, implicit)
+            VALUES (:bucket, :path, :parentPath, 0, :lastModified, TRUE)
+            ON CONFLICT (bucket, path) DO NOTHING
+            """, nativeQuery = true)
+    void insertFolderIfAbsent(@Param("bucket") String bucket, @Param("path") String path,
+                              @Param("parentPath") String parentPath, @Param("lastModified") Instant lastModified);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO object_metadata (bucket, path, parent_path, size, content_type, last_modified)
+            SELECT bucket, :destinationPath, :destinationParentPath, size, content_type, :lastModified
+            FROM object_metadata
+            WHERE bucket = :bucket AND path = :sourcePath
+            ON CONFLICT (bucket, path) DO UPDATE
+            SET size = EXCLUDED.size, content_type = EXCLUDED.content_type, last_modified = EXCLUDED.last_modified,
+                implicit = FALSE
+            """, nativeQuery = true)
+    int copy(@Param("bucket") String bucket, @Param("destinationPath") String destinationPath,
+             @Param("destinationParentPath") String destinationParentPath, @Param("sourcePath") String sourcePath,
+             @Param("lastModified") Instant lastModified);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO object_metadata (bucket, path, parent_path, size, content_type, last_modified, implicit)
+            SELECT bucket,
+                   :destinationPrefix || substr(path, :sourcePrefixLength + 1),
+                   CASE
+                       WHEN path = :sourcePrefix THEN :destinationParentPath
+                       ELSE :destinationPrefix || substr(parent_path, :sourcePrefixLength + 1)
+                   END,
+                   size, content_type, :lastModified, implicit
+            FROM object_metadata
+            WHERE bucket = :bucket AND path LIKE :sourcePattern
+            ON CONFLICT (bucket, path) DO UPDATE
+            SET size = EXCLUDED.size, content_type = EXCLUDED.content_type, last_modified = EXCLUDED.last_modified,
+                implicit = object_metadata.implicit AND EXCLUDED.implicit
+            """, nativeQuery = true)
+    int copyAll(@Param("bucket") String bucket, @Param("destinationPrefix") String destinationPrefix,
+                @Param("destinationParentPath") String destinationParentPath, @Param("sourcePrefix") String sourcePrefix,
+                @Param("sourcePrefixLength") int sourcePrefixLength, @Param("sourcePattern") String sourcePattern,
+                @Param("lastModified") Instant lastModified);
+
+    @Modifying
+    @Query(value = "DELETE FROM object_metadata WHERE bucket = :bucket AND path = :path", nativeQuery = true)
+    void deleteByBucketAndPath(@Param("bucket") String bucket, @Param("path") String path);
+
+    @Modifying
+    @Query(value = "DELETE FROM object_metadata WHERE bucket = :bucket AND path IN (:paths)", nativeQuery = true)
+    void deleteAllByBucketAndPathIn(@Param("bucket") String bucket, @Param("paths") Collection<String> paths);
+
+    @Modifying
+    @Query(value = "DELETE FROM object_metadata WHERE bucket = :bucket AND path LIKE :pattern", nativeQuery = true)
+    void deleteAllByPathPattern(@Param("bucket") String bucket, @Param("pattern") String pattern);
+
+    /**
+     * @return the number of deleted rows, zero if the folder is not implicit or still has children
+     */
+    @Modifying
+    @Query(value = """
+            DELETE FROM object_metadata
+            WHERE bucket = :bucket AND path = :path AND implicit
+              AND NOT EXISTS (SELECT 1 FROM object_metadata child WHERE child.bucket = :bucket AND child.parent_path = :path)
+            """, nativeQuery = true)
+    int deleteFolderIfImplicitAndEmpty(@Param("bucket") String bucket, @Param("path") String path);
+}
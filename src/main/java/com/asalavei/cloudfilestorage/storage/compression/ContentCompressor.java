@@ -0,0 +1,116 @@
+package com.asalavei.cloudfilestorage.storage.compression;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compresses text-like content before it is stored, when {@code storage.compression.enabled} is set.
+ * <p>
+ * Content is deflated in the zlib format at {@code storage.compression.level}, a fast level by default, since
+ * text compresses well even then and inflating costs little on every read. Whether content is compressible is
+ * judged by its content type, with the file extension as the fallback for content uploaded without a specific type.
+ */
+@Component
+public class ContentCompressor {
+
+    public static final String CODEC = "deflate";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Set<String> COMPRESSIBLE_CONTENT_TYPE_PREFIXES = Set.of("text/");
+
+    private static final Set<String> COMPRESSIBLE_CONTENT_TYPE_SUFFIXES = Set.of("+json", "+xml");
+
+    private static final Set<String> COMPRESSIBLE_CONTENT_TYPES = Set.of(
+            "application/json", "application/x-ndjson", "application/xml", "application/javascript",
+            "application/x-javascript", "application/sql", "application/x-sh", "application/x-yaml",
+            "application/yaml", "application/rtf", "application/csv", "application/x-tex",
+            "application/msword", "application/vnd.ms-excel", "application/vnd.ms-powerpoint");
+
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of(
+            "txt", "log", "csv", "tsv", "json", "ndjson", "xml", "html", "htm", "css", "js", "ts", "md",
+            "yaml", "yml", "toml", "ini", "conf", "properties", "sql", "sh", "java", "py", "c", "cpp", "h",
+            "svg", "rtf", "tex", "doc", "xls", "ppt");
+
+    private final boolean enabled;
+    private final int level;
+    private final long minSize;
+
+    public ContentCompressor(@Value("${storage.compression.enabled}") boolean enabled,
+                             @Value("${storage.compression.level}") int level,
+                             @Value("${storage.compression.min-size}") DataSize minSize) {
+        this.enabled = enabled;
+        this.level = level;
+        this.minSize = minSize.toBytes();
+    }
+
+    /**
+     * @return whether content of this size should be compressed before it is stored
+     */
+    public boolean isCompressible(String fileName, String contentType, long size) {
+        return enabled && size >= minSize && isCompressibleType(fileName, contentType);
+    }
+
+    public byte[] compress(InputStream inputStream, long size) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.min(size, Integer.MAX_VALUE - 8) / 2);
+        Deflater deflater = new Deflater(level);
+
+        try (DeflaterOutputStream outputStream = new DeflaterOutputStream(bytes, deflater, BUFFER_SIZE)) {
+            inputStream.transferTo(outputStream);
+        } finally {
+            deflater.end();
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param codec the codec the content was stored with
+     */
+    public InputStream decompress(InputStream inputStream, String codec) {
+        if (!CODEC.equals(codec)) {
+            throw new IllegalArgumentException("Unsupported codec: " + codec);
+        }
+
+        Inflater inflater = new Inflater();
+
+        return new InflaterInputStream(inputStream, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    private static boolean isCompressibleType(String fileName, String contentType) {
+        if (contentType != null) {
+            String mediaType = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+
+            if (COMPRESSIBLE_CONTENT_TYPES.contains(mediaType)
+                    || COMPRESSIBLE_CONTENT_TYPE_PREFIXES.stream().anyMatch(mediaType::startsWith)
+                    || COMPRESSIBLE_CONTENT_TYPE_SUFFIXES.stream().anyMatch(mediaType::endsWith)) {
+                return true;
+            }
+        }
+
+        int extensionStart = fileName.lastIndexOf('.');
+
+        return extensionStart >= 0
+                && COMPRESSIBLE_EXTENSIONS.contains(fileName.substring(extensionStart + 1).toLowerCase(Locale.ROOT));
+    }
+}
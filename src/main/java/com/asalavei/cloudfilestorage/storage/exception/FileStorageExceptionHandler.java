@@ -2,10 +2,13 @@ package com.asalavei.cloudfilestorage.storage.exception;
 
 import com.asalavei.cloudfilestorage.util.HttpUtil;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -13,6 +16,7 @@ import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import static com.asalavei.cloudfilestorage.util.Constants.ERROR_404_VIEW;
+import static com.asalavei.cloudfilestorage.util.Constants.ERROR_429_VIEW;
 import static com.asalavei.cloudfilestorage.util.Constants.ERROR_500_VIEW;
 import static com.asalavei.cloudfilestorage.util.Constants.MESSAGE_ATTRIBUTE;
 
@@ -36,6 +40,14 @@ public class FileStorageExceptionHandler {
         return ERROR_404_VIEW;
     }
 
+    @ExceptionHandler(RateLimitExceededException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public String handleRateLimitExceededException(RateLimitExceededException e, HttpServletResponse response, Model model) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()));
+        model.addAttribute(MESSAGE_ATTRIBUTE, e.getMessage());
+        return ERROR_429_VIEW;
+    }
+
     @ExceptionHandler(FileStorageException.class)
     public String handleFileStorageException(FileStorageException e, RedirectAttributes redirectAttributes,
                                              HttpServletRequest request) {
@@ -0,0 +1,8 @@
+package com.asalavei.cloudfilestorage.storage.exception;
+
+public class QuotaExceededException extends FileStorageException {
+
+    public QuotaExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.asalavei.cloudfilestorage.storage.exception;
+
+import lombok.Getter;
+
+@Getter
+public class RateLimitExceededException extends FileStorageException {
+
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
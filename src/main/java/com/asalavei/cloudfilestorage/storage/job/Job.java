@@ -0,0 +1,9 @@
+package com.asalavei.cloudfilestorage.storage.job;
+
+/**
+ * @param path     the path of the folder, relative to the user root
+ * @param newName  the new name of the folder for a rename, or {@code null}
+ * @param attempts the number of times the job has been claimed, including the current one
+ */
+public record Job(String id, JobType type, Long userId, String path, String newName, JobPhase phase, int attempts) {
+}
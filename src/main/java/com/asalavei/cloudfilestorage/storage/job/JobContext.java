@@ -0,0 +1,42 @@
+package com.asalavei.cloudfilestorage.storage.job;
+
+import com.asalavei.cloudfilestorage.storage.minio.ProgressListener;
+
+/**
+ * What a running job needs to report its progress and record checkpoints.
+ */
+public class JobContext {
+
+    private final Job job;
+    private final JobRepository jobRepository;
+    private JobPhase phase;
+
+    JobContext(Job job, JobRepository jobRepository) {
+        this.job = job;
+        this.jobRepository = jobRepository;
+        this.phase = job.phase();
+    }
+
+    /**
+     * @return the step to run, which is the first one unless the job was interrupted
+     */
+    public JobPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return whether an earlier attempt of the job was interrupted, so part of its work may be done already
+     */
+    public boolean isResumed() {
+        return job.attempts() > 1;
+    }
+
+    public ProgressListener getProgressListener() {
+        return jobRepository.getProgressListener(job.id());
+    }
+
+    public void checkpoint(JobPhase phase) {
+        jobRepository.checkpoint(job.id(), phase);
+        this.phase = phase;
+    }
+}
@@ -0,0 +1,27 @@
+package com.asalavei.cloudfilestorage.storage.job;
+
+import com.asalavei.cloudfilestorage.security.UserPrincipal;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Reports the status of background jobs, such as folder renames and deletions, to the user who started them.
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/storage/jobs")
+public class JobController {
+
+    private final JobRepository jobRepository;
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<JobResponseDto> getJob(@PathVariable String jobId,
+                                                 @AuthenticationPrincipal UserPrincipal userPrincipal) {
+        return ResponseEntity.of(jobRepository.find(jobId, userPrincipal.getId()));
+    }
+}
@@ -0,0 +1,9 @@
+package com.asalavei.cloudfilestorage.storage.job;
+
+/**
+ * The step a job resumes from after it was interrupted. Every step can be repeated safely.
+ */
+public enum JobPhase {
+    COPY,
+    DELETE
+}
@@ -0,0 +1,249 @@
+package com.asalavei.cloudfilestorage.storage.job;
+
+import com.asalavei.cloudfilestorage.storage.minio.ProgressListener;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps jobs in Redis, so that any node can run them and their status can be polled from any node.
+ * <p>
+ * A job is either in the queue or leased by the worker running it. A worker renews the leases of its jobs while
+ * they run; the job of a worker that stopped renewing, for example because its node crashed, is queued again once
+ * its lease expires and resumes from its last checkpoint. The outcome of a job is kept for
+ * {@code storage.job.result-ttl} after it finished.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class JobRepository {
+
+    private static final String KEY_PREFIX = "storage:job:";
+    private static final String QUEUE_KEY = "storage:jobs:queue";
+    private static final String LEASES_KEY = "storage:jobs:leases";
+
+    private static final String TYPE_FIELD = "type";
+    private static final String USER_ID_FIELD = "userId";
+    private static final String PATH_FIELD = "path";
+    private static final String NEW_NAME_FIELD = "newName";
+    private static final String PHASE_FIELD = "phase";
+    private static final String STATUS_FIELD = "status";
+    private static final String ATTEMPTS_FIELD = "attempts";
+    private static final String DONE_FIELD = "done";
+    private static final String TOTAL_FIELD = "total";
+    private static final String MESSAGE_FIELD = "message";
+
+    /**
+     * Progress is written at most this many times per job.
+     */
+    private static final int MAX_PROGRESS_UPDATES = 100;
+
+    private static final RedisScript<Long> ENQUEUE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/job-enqueue.lua"), Long.class);
+    private static final RedisScript<String> CLAIM_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/job-claim.lua"), String.class);
+    private static final RedisScript<Long> RENEW_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/job-renew.lua"), Long.class);
+    private static final RedisScript<Long> REQUEUE_EXPIRED_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/job-requeue-expired.lua"), Long.class);
+    private static final RedisScript<Long> FINISH_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/job-finish.lua"), Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${storage.job.lease-duration}")
+    private Duration leaseDuration;
+
+    @Value("${storage.job.result-ttl}")
+    private Duration resultTtl;
+
+    /**
+     * @return the id of the queued job
+     */
+    public String enqueue(JobType type, Long userId, String path, String newName, JobPhase phase) {
+        String id = UUID.randomUUID().toString();
+        List<String> args = new ArrayList<>(List.of(id,
+                TYPE_FIELD, type.name(),
+                USER_ID_FIELD, userId.toString(),
+                PATH_FIELD, path,
+                PHASE_FIELD, phase.name(),
+                STATUS_FIELD, JobStatus.QUEUED.name(),
+                ATTEMPTS_FIELD, "0",
+                DONE_FIELD, "0",
+                TOTAL_FIELD, "0"
+        ));
+
+        if (newName != null) {
+            args.add(NEW_NAME_FIELD);
+            args.add(newName);
+        }
+
+        redisTemplate.execute(ENQUEUE_SCRIPT, List.of(getKey(id), QUEUE_KEY), args.toArray());
+
+        return id;
+    }
+
+    /**
+     * Leases the oldest queued job and counts the attempt.
+     */
+    public Optional<Job> claim() {
+        String id = redisTemplate.execute(CLAIM_SCRIPT, List.of(QUEUE_KEY, LEASES_KEY), getLeaseExpiry());
+
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        String key = getKey(id);
+        long attempts = redisTemplate.opsForHash().increment(key, ATTEMPTS_FIELD, 1);
+        redisTemplate.opsForHash().put(key, STATUS_FIELD, JobStatus.RUNNING.name());
+        Map<Object, Object> fields = redisTemplate.opsForHash().entries(key);
+
+        if (!fields.containsKey(TYPE_FIELD)) {
+            log.warn("Dropping job '{}' that is queued without its data", id);
+            redisTemplate.delete(key);
+            redisTemplate.opsForZSet().remove(LEASES_KEY, id);
+            return Optional.empty();
+        }
+
+        return Optional.of(new Job(
+                id,
+                JobType.valueOf(fields.get(TYPE_FIELD).toString()),
+                Long.parseLong(fields.get(USER_ID_FIELD).toString()),
+                fields.get(PATH_FIELD).toString(),
+                (String) fields.get(NEW_NAME_FIELD),
+                JobPhase.valueOf(fields.get(PHASE_FIELD).toString()),
+                (int) attempts
+        ));
+    }
+
+    /**
+     * @return {@code false} if the lease has expired and the job may already run elsewhere
+     */
+    public boolean renewLease(String id) {
+        Long renewed = redisTemplate.execute(RENEW_SCRIPT, List.of(LEASES_KEY), id, getLeaseExpiry());
+        return renewed != null && renewed > 0;
+    }
+
+    /**
+     * Queues the jobs with expired leases again.
+     *
+     * @return the number of queued jobs
+     */
+    public long requeueExpired() {
+        Long requeued = redisTemplate.execute(REQUEUE_EXPIRED_SCRIPT, List.of(LEASES_KEY, QUEUE_KEY),
+                Long.toString(System.currentTimeMillis()));
+        return requeued == null ? 0 : requeued;
+    }
+
+    /**
+     * Records the step a job resumes from if it is interrupted after this point.
+     */
+    public void checkpoint(String id, JobPhase phase) {
+        redisTemplate.opsForHash().put(getKey(id), PHASE_FIELD, phase.name());
+    }
+
+    /**
+     * Records the outcome of the job and releases its lease.
+     *
+     * @return {@code false} if the lease was lost and the outcome was not recorded
+     */
+    public boolean finish(String id, JobStatus status, String message) {
+        Long finished = redisTemplate.execute(FINISH_SCRIPT, List.of(LEASES_KEY, getKey(id)),
+                id, status.name(), message, Long.toString(resultTtl.toMillis()));
+        return finished != null && finished > 0;
+    }
+
+    public Optional<JobResponseDto> find(String id, Long userId) {
+        Map<Object, Object> fields = redisTemplate.opsForHash().entries(getKey(id));
+
+        if (fields.isEmpty() || !userId.toString().equals(fields.get(USER_ID_FIELD))) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new JobResponseDto(
+                id,
+                JobType.valueOf(fields.get(TYPE_FIELD).toString()),
+                JobStatus.valueOf(fields.get(STATUS_FIELD).toString()),
+                Long.parseLong(fields.get(DONE_FIELD).toString()),
+                Long.parseLong(fields.get(TOTAL_FIELD).toString()),
+                (String) fields.get(MESSAGE_FIELD)
+        ));
+    }
+
+    /**
+     * Returns the listener that records the progress of the job.
+     */
+    public ProgressListener getProgressListener(String id) {
+        String key = getKey(id);
+
+        return new ProgressListener() {
+
+            // a lock rather than synchronized, so that virtual threads writing to Redis do not pin their carriers
+            private final Lock lock = new ReentrantLock();
+
+            private long total;
+            private long step = 1;
+            private long lastDone;
+
+            @Override
+            public void onStarted(long total) {
+                lock.lock();
+
+                try {
+                    this.total = total;
+                    step = Math.max(1, total / MAX_PROGRESS_UPDATES);
+                    lastDone = 0;
+                    write(DONE_FIELD, 0);
+                    write(TOTAL_FIELD, total);
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void onProgress(long done) {
+                lock.lock();
+
+                try {
+                    if (done - lastDone >= step || done == total) {
+                        lastDone = done;
+                        write(DONE_FIELD, done);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            // progress is informational, so failing to record it must not fail the job
+            private void write(String field, long value) {
+                try {
+                    redisTemplate.opsForHash().put(key, field, Long.toString(value));
+                } catch (DataAccessException e) {
+                    log.warn("Failed to record progress of job '{}'", id, e);
+                }
+            }
+        };
+    }
+
+    private String getLeaseExpiry() {
+        return Long.toString(System.currentTimeMillis() + leaseDuration.toMillis());
+    }
+
+    private String getKey(String id) {
+        return KEY_PREFIX + id;
+    }
+}
@@ -0,0 +1,9 @@
+package com.asalavei.cloudfilestorage.storage.job;
+
+/**
+ * @param done    the number of objects processed so far
+ * @param total   the number of objects to process, or {@code 0} while they are still being listed or not counted
+ * @param message the outcome to show to the user once the job has finished, or {@code null}
+ */
+public record JobResponseDto(String id, JobType type, JobStatus status, long done, long total, String message) {
+}
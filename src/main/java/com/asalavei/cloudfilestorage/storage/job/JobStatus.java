@@ -0,0 +1,8 @@
+package com.asalavei.cloudfilestorage.storage.job;
+
+public enum JobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED
+}
@@ -0,0 +1,6 @@
+package com.asalavei.cloudfilestorage.storage.job;
+
+public enum JobType {
+    RENAME_FOLDER,
+    DELETE_FOLDER
+}
@@ -0,0 +1,158 @@
+package com.asalavei.cloudfilestorage.storage.job;
+
+import com.asalavei.cloudfilestorage.storage.FileStorageService;
+import com.asalavei.cloudfilestorage.storage.exception.FileStorageException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs queued jobs on every node, at most {@code storage.job.concurrency} at a time. Jobs are I/O-bound, so each
+ * runs on a virtual thread.
+ * <p>
+ * The worker renews the leases of its running jobs and queues the jobs of workers that stopped renewing theirs
+ * again. A job that keeps being interrupted fails after {@code storage.job.max-attempts} attempts.
+ */
+@Slf4j
+@Component
+public class JobWorker {
+
+    private final JobRepository jobRepository;
+    private final FileStorageService fileStorageService;
+    private final int maxAttempts;
+    private final Semaphore permits;
+    private final Set<String> runningJobIds = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean stopping;
+
+    public JobWorker(JobRepository jobRepository, FileStorageService fileStorageService,
+                     @Value("${storage.job.concurrency}") int concurrency,
+                     @Value("${storage.job.max-attempts}") int maxAttempts) {
+        this.jobRepository = jobRepository;
+        this.fileStorageService = fileStorageService;
+        this.maxAttempts = maxAttempts;
+        this.permits = new Semaphore(concurrency);
+    }
+
+    @Scheduled(fixedDelayString = "${storage.job.poll-interval}")
+    public void poll() {
+        while (!stopping && permits.tryAcquire()) {
+            Optional<Job> job;
+
+            try {
+                job = jobRepository.claim();
+            } catch (DataAccessException e) {
+                permits.release();
+                log.warn("Failed to claim a job", e);
+                return;
+            }
+
+            if (job.isEmpty()) {
+                permits.release();
+                return;
+            }
+
+            runningJobIds.add(job.get().id());
+            executor.execute(() -> {
+                try {
+                    run(job.get());
+                } finally {
+                    runningJobIds.remove(job.get().id());
+                    permits.release();
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${storage.job.lease-renewal-interval}")
+    public void renewLeases() {
+        try {
+            for (String jobId : runningJobIds) {
+                if (!jobRepository.renewLease(jobId)) {
+                    log.warn("Lease of job '{}' expired while it was running, it may run elsewhere as well", jobId);
+                }
+            }
+
+            long requeued = jobRepository.requeueExpired();
+
+            if (requeued > 0) {
+                log.info("Queued {} jobs with expired leases again", requeued);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to renew job leases", e);
+        }
+    }
+
+    /**
+     * Interrupts the running jobs. Their leases are not released, so they are resumed elsewhere once they expire.
+     */
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        executor.shutdownNow();
+    }
+
+    private void run(Job job) {
+        if (job.attempts() > maxAttempts) {
+            log.error("Giving up job '{}' of type {} for user '{}' after {} attempts", job.id(), job.type(), job.userId(), maxAttempts);
+            finish(job, JobStatus.FAILED, getFailureMessage(job));
+            return;
+        }
+
+        JobContext context = new JobContext(job, jobRepository);
+
+        try {
+            switch (job.type()) {
+                case RENAME_FOLDER -> fileStorageService.renameFolder(job.userId(), job.newName(), job.path(), context);
+                case DELETE_FOLDER -> fileStorageService.deleteFolder(job.userId(), job.path(), context);
+            }
+
+            finish(job, JobStatus.SUCCEEDED, getSuccessMessage(job));
+        } catch (RuntimeException e) {
+            if (stopping) {
+                log.info("Job '{}' was interrupted by shutdown and will be resumed", job.id());
+                return;
+            }
+
+            if (!(e instanceof FileStorageException)) {
+                log.error("Error while running job '{}' of type {} for user '{}'", job.id(), job.type(), job.userId(), e);
+            }
+
+            finish(job, JobStatus.FAILED, e instanceof FileStorageException ? e.getMessage() : getFailureMessage(job));
+        }
+    }
+
+    private void finish(Job job, JobStatus status, String message) {
+        try {
+            if (!jobRepository.finish(job.id(), status, message)) {
+                log.warn("Job '{}' finished as {} after its lease was lost, the outcome was not recorded", job.id(), status);
+            }
+        } catch (DataAccessException e) {
+            log.error("Failed to record outcome {} of job '{}', it will be run again", status, job.id(), e);
+        }
+    }
+
+    private static String getSuccessMessage(Job job) {
+        return switch (job.type()) {
+            case RENAME_FOLDER -> "Renamed successfully";
+            case DELETE_FOLDER -> "Deleted successfully";
+        };
+    }
+
+    private static String getFailureMessage(Job job) {
+        return switch (job.type()) {
+            case RENAME_FOLDER -> "Unable to rename folder";
+            case DELETE_FOLDER -> "Unable to delete folder";
+        };
+    }
+}
@@ -0,0 +1,135 @@
+package com.asalavei.cloudfilestorage.storage.listing;
+
+import com.asalavei.cloudfilestorage.storage.ObjectPageResponseDto;
+import com.asalavei.cloudfilestorage.util.PathUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Caches listing pages in Redis, so that repeated navigation is served without listing and sorting the folder
+ * again on any node.
+ * <p>
+ * Pages of a user are kept in one hash keyed by folder and cursor, which expires {@code storage.listing.cache.ttl}
+ * after the last stored page. A write invalidates the pages of every folder above the written path and, for
+ * a folder, of every folder below it. The hash also holds a version that every invalidation increments, so that
+ * a page read before an invalidation is not stored after it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ListingCache {
+
+    private static final String KEY_PREFIX = "storage:listing:";
+    private static final String VERSION_FIELD = "~version";
+    private static final String CURSOR_SEPARATOR = "\n";
+    private static final byte[] INITIAL_VERSION = "0".getBytes(StandardCharsets.US_ASCII);
+
+    private static final RedisScript<Long> PUT_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/listing-cache-put.lua"), Long.class);
+    private static final RedisScript<Long> INVALIDATE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/listing-cache-invalidate.lua"), Long.class);
+
+    private final RedisTemplate<String, byte[]> binaryRedisTemplate;
+
+    @Value("${storage.listing.cache.enabled}")
+    private boolean enabled;
+
+    @Value("${storage.listing.cache.ttl}")
+    private Duration ttl;
+
+    public Optional<ObjectPageResponseDto> get(Long userId, String folderPath, String cursor) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        try {
+            byte[] page = (byte[]) binaryRedisTemplate.opsForHash().get(getKey(userId), getField(folderPath, cursor));
+            return page == null ? Optional.empty() : Optional.ofNullable(ListingCodec.decode(page));
+        } catch (DataAccessException e) {
+            log.warn("Failed to read cached listing of folder '{}' for user '{}'", folderPath, userId, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the version to pass to {@link #put} with a page that is listed after this call.
+     */
+    public byte[] getVersion(Long userId) {
+        if (!enabled) {
+            return INITIAL_VERSION;
+        }
+
+        try {
+            byte[] version = (byte[]) binaryRedisTemplate.opsForHash().get(getKey(userId), VERSION_FIELD);
+            return version == null ? INITIAL_VERSION : version;
+        } catch (DataAccessException e) {
+            log.warn("Failed to read listing cache version for user '{}'", userId, e);
+            return INITIAL_VERSION;
+        }
+    }
+
+    public void put(Long userId, String folderPath, String cursor, ObjectPageResponseDto page, byte[] version) {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            binaryRedisTemplate.execute(PUT_SCRIPT, List.of(getKey(userId)),
+                    version,
+                    getField(folderPath, cursor).getBytes(StandardCharsets.UTF_8),
+                    ListingCodec.encode(page),
+                    Long.toString(ttl.toMillis()).getBytes(StandardCharsets.US_ASCII));
+        } catch (DataAccessException e) {
+            log.warn("Failed to cache listing of folder '{}' for user '{}'", folderPath, userId, e);
+        }
+    }
+
+    /**
+     * Invalidates the listings that show the path: those of its parent folders and, if the path is a folder,
+     * its own listing and the listings of its subfolders.
+     */
+    public void invalidate(Long userId, String path) {
+        if (!enabled) {
+            return;
+        }
+
+        List<byte[]> args = new ArrayList<>();
+        args.add(Long.toString(ttl.toMillis()).getBytes(StandardCharsets.US_ASCII));
+
+        if (PathUtil.isFolder(path)) {
+            args.add(path.getBytes(StandardCharsets.UTF_8));
+        }
+
+        int end = PathUtil.isFolder(path) ? path.length() - 1 : path.length();
+
+        for (int i = path.lastIndexOf(PathUtil.DELIMITER, end - 1); i >= 0; i = path.lastIndexOf(PathUtil.DELIMITER, i - 1)) {
+            args.add((path.substring(0, i + 1) + CURSOR_SEPARATOR).getBytes(StandardCharsets.UTF_8));
+        }
+
+        try {
+            binaryRedisTemplate.execute(INVALIDATE_SCRIPT, List.of(getKey(userId)), args.toArray());
+        } catch (DataAccessException e) {
+            log.error("Failed to invalidate cached listings of path '{}' for user '{}'", path, userId, e);
+        }
+    }
+
+    private String getKey(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    private String getField(String folderPath, String cursor) {
+        return folderPath + CURSOR_SEPARATOR + (cursor == null ? "" : cursor);
+    }
+}
@@ -0,0 +1,80 @@
+package com.asalavei.cloudfilestorage.storage.listing;
+
+import com.asalavei.cloudfilestorage.storage.ObjectPageResponseDto;
+import com.asalavei.cloudfilestorage.storage.ObjectResponseDto;
+import lombok.experimental.UtilityClass;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.asalavei.cloudfilestorage.util.PathUtil.getObjectName;
+import static com.asalavei.cloudfilestorage.util.PathUtil.isFolder;
+
+/**
+ * Binary form of a listing page. Only object paths and thumbnail versions are stored, since names and folder flags
+ * are derived from the paths.
+ */
+@UtilityClass
+class ListingCodec {
+
+    private static final byte FORMAT_VERSION = 2;
+
+    byte[] encode(ObjectPageResponseDto page) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(FORMAT_VERSION);
+            output.writeBoolean(page.getNextCursor() != null);
+
+            if (page.getNextCursor() != null) {
+                output.writeUTF(page.getNextCursor());
+            }
+
+            output.writeInt(page.getObjects().size());
+
+            for (ObjectResponseDto object : page.getObjects()) {
+                output.writeUTF(object.getPath());
+                output.writeBoolean(object.getThumbnailVersion() != null);
+
+                if (object.getThumbnailVersion() != null) {
+                    output.writeLong(object.getThumbnailVersion());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the decoded page, or {@code null} if it was written in another format
+     */
+    ObjectPageResponseDto decode(byte[] bytes) {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (input.readByte() != FORMAT_VERSION) {
+                return null;
+            }
+
+            String nextCursor = input.readBoolean() ? input.readUTF() : null;
+            int size = input.readInt();
+            List<ObjectResponseDto> objects = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                String path = input.readUTF();
+                Long thumbnailVersion = input.readBoolean() ? input.readLong() : null;
+                objects.add(new ObjectResponseDto(getObjectName(path), path, isFolder(path), thumbnailVersion));
+            }
+
+            return new ObjectPageResponseDto(objects, nextCursor);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.asalavei.cloudfilestorage.storage.minio;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the number of MinIO requests in flight, counting a request until its response body is closed.
+ * <p>
+ * With virtual threads the number of concurrent callers is no longer bounded by a thread pool, so this limit
+ * is what protects MinIO. Object downloads are the exception and are counted only until their headers arrive:
+ * they are streamed at the pace of the client, and holding a permit that long would let a few slow downloads
+ * starve listings and other short requests.
+ */
+class ConcurrencyLimitingInterceptor implements Interceptor {
+
+    private final int maxConcurrentRequests;
+    private final Semaphore permits;
+
+    ConcurrencyLimitingInterceptor(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a MinIO request permit");
+        }
+
+        Permit permit = new Permit();
+
+        try {
+            Response response = chain.proceed(chain.request());
+            ResponseBody body = response.body();
+
+            if (body == null || isObjectDownload(chain.request())) {
+                permit.release();
+                return response;
+            }
+
+            return response.newBuilder()
+                    .body(new PermitReleasingResponseBody(body, permit))
+                    .build();
+        } catch (IOException | RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+    }
+
+    /**
+     * A GetObject request addresses an object and, unlike the other GET requests to one, has no subresource
+     * in its query.
+     */
+    private static boolean isObjectDownload(Request request) {
+        HttpUrl url = request.url();
+        return "GET".equals(request.method()) && url.pathSize() > 1 && url.querySize() == 0;
+    }
+
+    int getActiveRequests() {
+        return maxConcurrentRequests - permits.availablePermits();
+    }
+
+    int getWaitingRequests() {
+        return permits.getQueueLength();
+    }
+
+    private class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+
+    private static class PermitReleasingResponseBody extends ResponseBody {
+
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        PermitReleasingResponseBody(ResponseBody delegate, Permit permit) {
+            this.delegate = delegate;
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        permit.release();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.asalavei.cloudfilestorage.storage.minio;
+
+import com.asalavei.cloudfilestorage.util.PathUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the results of existence checks, both positive and negative, for at most {@code minio.existence-cache.ttl}.
+ * At most {@code minio.existence-cache.max-size} paths are kept, evicted in least recently used order.
+ * <p>
+ * Writes through {@link MinioRepository} invalidate the written path and its parent folders, since the existence
+ * of a folder depends on its contents. Writes made through other nodes are picked up once the entries expire.
+ */
+@Component
+public class ExistenceCache {
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    /**
+     * Incremented on every invalidation, so that a check which started before a write cannot cache its stale result.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Value("${minio.existence-cache.max-size}")
+    private int maxSize;
+
+    @Value("${minio.existence-cache.ttl}")
+    private Duration ttl;
+
+    /**
+     * @return the cached result, or {@code null} if the path has to be checked
+     */
+    public Boolean get(String bucketName, String path) {
+        String key = getKey(bucketName, path);
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                hits.increment();
+                return entry.exists;
+            }
+
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Returns the version to pass to {@link #put} with the result of a check that starts now.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    public void put(String bucketName, String path, boolean exists, long checkVersion) {
+        synchronized (entries) {
+            if (version.get() != checkVersion) {
+                return;
+            }
+
+            entries.put(getKey(bucketName, path), new Entry(exists, System.nanoTime() + ttl.toNanos()));
+
+            if (entries.size() > maxSize) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+    }
+
+    /**
+     * Invalidates the path and its parent folders.
+     */
+    public void invalidate(String bucketName, String path) {
+        synchronized (entries) {
+            version.incrementAndGet();
+            entries.remove(getKey(bucketName, path));
+            invalidateParents(bucketName, path);
+        }
+    }
+
+    /**
+     * Invalidates every path under the prefix, the prefix itself and its parent folders.
+     */
+    public void invalidateAll(String bucketName, String prefix) {
+        String keyPrefix = getKey(bucketName, prefix);
+
+        synchronized (entries) {
+            version.incrementAndGet();
+            entries.keySet().removeIf(key -> key.startsWith(keyPrefix));
+            invalidateParents(bucketName, prefix);
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void invalidateParents(String bucketName, String path) {
+        int end = PathUtil.isFolder(path) ? path.length() - 1 : path.length();
+
+        for (int i = path.lastIndexOf(PathUtil.DELIMITER, end - 1); i >= 0; i = path.lastIndexOf(PathUtil.DELIMITER, i - 1)) {
+            entries.remove(getKey(bucketName, path.substring(0, i + 1)));
+        }
+    }
+
+    private String getKey(String bucketName, String path) {
+        return bucketName + PathUtil.DELIMITER + path;
+    }
+
+    private record Entry(boolean exists, long expiresAt) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.asalavei.cloudfilestorage.storage.minio;
+
+import io.micrometer.core.instrument.Counter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from an object as they are consumed, so that partially read downloads are counted correctly.
+ */
+class MeteredInputStream extends FilterInputStream {
+
+    private final Counter bytesCounter;
+
+    MeteredInputStream(InputStream in, Counter bytesCounter) {
+        super(in);
+        this.bytesCounter = bytesCounter;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+
+        if (b >= 0) {
+            bytesCounter.increment();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+
+        if (read > 0) {
+            bytesCounter.increment(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+
+        if (skipped > 0) {
+            bytesCounter.increment(skipped);
+        }
+        return skipped;
+    }
+}
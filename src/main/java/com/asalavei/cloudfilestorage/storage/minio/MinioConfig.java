@@ -2,10 +2,21 @@ package com.asalavei.cloudfilestorage.storage.minio;
 
 import io.minio.BucketExistsArgs;
 import io.minio.MakeBucketArgs;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
+import io.minio.http.HttpUtils;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class MinioConfig {
@@ -22,11 +33,51 @@ public class MinioConfig {
     @Value("${minio.bucket.name}")
     private String bucketName;
 
+    @Value("${minio.executor.pool-size}")
+    private int executorPoolSize;
+
+    @Value("${minio.http.max-concurrent-requests}")
+    private int maxConcurrentRequests;
+
+    @Value("${minio.http.max-idle-connections}")
+    private int maxIdleConnections;
+
+    @Value("${minio.http.keep-alive}")
+    private Duration keepAlive;
+
+    @Value("${minio.http.timeout}")
+    private Duration timeout;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    /**
+     * Shared by the MinIO clients. Calls are dispatched on virtual threads when they are enabled, and at most
+     * {@code minio.http.max-concurrent-requests} requests, including their response bodies except those of object
+     * downloads, are in flight at once.
+     */
     @Bean
-    public MinioClient minioClient() {
+    public OkHttpClient minioHttpClient() {
+        Dispatcher dispatcher = virtualThreadsEnabled
+                ? new Dispatcher(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("minio-http-", 0).factory()))
+                : new Dispatcher();
+        dispatcher.setMaxRequests(maxConcurrentRequests);
+        dispatcher.setMaxRequestsPerHost(maxConcurrentRequests);
+
+        return HttpUtils.newDefaultHttpClient(timeout.toMillis(), timeout.toMillis(), timeout.toMillis())
+                .newBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+                .addInterceptor(new ConcurrencyLimitingInterceptor(maxConcurrentRequests))
+                .build();
+    }
+
+    @Bean
+    public MinioClient minioClient(OkHttpClient minioHttpClient) {
         MinioClient minioClient = MinioClient.builder()
                 .endpoint(url)
                 .credentials(accessKey, secretKey)
+                .httpClient(minioHttpClient)
                 .build();
 
         initBucket(minioClient);
@@ -34,6 +85,28 @@ public class MinioConfig {
         return minioClient;
     }
 
+    @Bean
+    public MultipartMinioClient multipartMinioClient(OkHttpClient minioHttpClient) {
+        return new MultipartMinioClient(MinioAsyncClient.builder()
+                .endpoint(url)
+                .credentials(accessKey, secretKey)
+                .httpClient(minioHttpClient)
+                .build());
+    }
+
+    /**
+     * Runs prefetching, copies and deletes. Their concurrency is bounded per operation and by the HTTP client,
+     * so with virtual threads every task simply gets its own thread.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService minioExecutor() {
+        if (virtualThreadsEnabled) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("minio-", 0).factory());
+        }
+
+        return Executors.newFixedThreadPool(executorPoolSize, new CustomizableThreadFactory("minio-"));
+    }
+
     private void initBucket(MinioClient minioClient) {
         try {
             boolean bucketExists = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
@@ -0,0 +1,165 @@
+package com.asalavei.cloudfilestorage.storage.minio;
+
+import com.asalavei.cloudfilestorage.storage.exception.ObjectNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Metrics of {@link MinioRepository} operations and of the HTTP client used to reach MinIO.
+ * <ul>
+ *   <li>{@code minio.operation} times every operation, tagged by operation and outcome.</li>
+ *   <li>{@code minio.operation.objects} is the distribution of the number of objects per successful operation.
+ *   It is kept apart from the timer, since tagging the timer with it would multiply its histogram series.</li>
+ *   <li>{@code minio.transferred} counts uploaded and downloaded bytes.</li>
+ *   <li>{@code minio.http.*} gauges show the connection pool and the requests waiting for a permit.</li>
+ *   <li>{@code minio.existence.cache.*} show how effective the {@link ExistenceCache} is.</li>
+ * </ul>
+ */
+@Component
+public class MinioMetrics {
+
+    private static final String OPERATION_METRIC = "minio.operation";
+    private static final String OBJECTS_METRIC = "minio.operation.objects";
+
+    private static final String OUTCOME_SUCCESS = "success";
+    private static final String OUTCOME_NOT_FOUND = "not_found";
+    private static final String OUTCOME_ERROR = "error";
+
+    private final MeterRegistry meterRegistry;
+    private final Counter uploadedBytes;
+    private final Counter downloadedBytes;
+
+    public MinioMetrics(MeterRegistry meterRegistry, OkHttpClient minioHttpClient, ExistenceCache existenceCache) {
+        this.meterRegistry = meterRegistry;
+        this.uploadedBytes = bytesCounter("upload");
+        this.downloadedBytes = bytesCounter("download");
+
+        registerHttpClientGauges(minioHttpClient);
+        registerExistenceCacheMeters(existenceCache);
+    }
+
+    public void record(String operation, Runnable action) {
+        record(operation, () -> {
+            action.run();
+            return null;
+        }, result -> 1);
+    }
+
+    public <T> T record(String operation, Supplier<T> action) {
+        return record(operation, action, result -> 1);
+    }
+
+    /**
+     * Times the action and records its outcome.
+     *
+     * @param objectCount returns the number of objects the action processed
+     */
+    public <T> T record(String operation, Supplier<T> action, ToLongFunction<T> objectCount) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = OUTCOME_ERROR;
+
+        try {
+            T result = action.get();
+            objectsSummary(operation).record(objectCount.applyAsLong(result));
+            outcome = OUTCOME_SUCCESS;
+
+            return result;
+        } catch (ObjectNotFoundException e) {
+            outcome = OUTCOME_NOT_FOUND;
+            throw e;
+        } finally {
+            // errors other than exceptions are recorded as well, before they propagate
+            sample.stop(timer(operation, outcome));
+        }
+    }
+
+    public void recordUpload(long bytes) {
+        uploadedBytes.increment(bytes);
+    }
+
+    /**
+     * Wraps the object content, so that the bytes are counted as they are read.
+     */
+    public InputStream meterDownload(InputStream inputStream) {
+        return new MeteredInputStream(inputStream, downloadedBytes);
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return Timer.builder(OPERATION_METRIC)
+                .description("Latency of MinIO repository operations")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary objectsSummary(String operation) {
+        return DistributionSummary.builder(OBJECTS_METRIC)
+                .description("Number of objects processed by MinIO repository operations")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private Counter bytesCounter(String direction) {
+        return Counter.builder("minio.transferred")
+                .description("Bytes transferred to and from MinIO")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .register(meterRegistry);
+    }
+
+    private void registerHttpClientGauges(OkHttpClient minioHttpClient) {
+        ConnectionPool connectionPool = minioHttpClient.connectionPool();
+        Dispatcher dispatcher = minioHttpClient.dispatcher();
+
+        Gauge.builder("minio.http.connections", connectionPool, ConnectionPool::connectionCount)
+                .description("Open connections to MinIO")
+                .register(meterRegistry);
+        Gauge.builder("minio.http.connections.idle", connectionPool, ConnectionPool::idleConnectionCount)
+                .description("Idle connections to MinIO")
+                .register(meterRegistry);
+        Gauge.builder("minio.http.calls.queued", dispatcher, Dispatcher::queuedCallsCount)
+                .description("Asynchronous calls waiting to be dispatched")
+                .register(meterRegistry);
+
+        minioHttpClient.interceptors().stream()
+                .filter(ConcurrencyLimitingInterceptor.class::isInstance)
+                .map(ConcurrencyLimitingInterceptor.class::cast)
+                .findFirst()
+                .ifPresent(interceptor -> {
+                    Gauge.builder("minio.http.requests.active", interceptor, ConcurrencyLimitingInterceptor::getActiveRequests)
+                            .description("Requests in flight, including responses still being read")
+                            .register(meterRegistry);
+                    Gauge.builder("minio.http.requests.waiting", interceptor, ConcurrencyLimitingInterceptor::getWaitingRequests)
+                            .description("Requests waiting for a permit")
+                            .register(meterRegistry);
+                });
+    }
+
+    private void registerExistenceCacheMeters(ExistenceCache existenceCache) {
+        FunctionCounter.builder("minio.existence.cache.requests", existenceCache, ExistenceCache::getHitCount)
+                .description("Existence checks served from the cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("minio.existence.cache.requests", existenceCache, ExistenceCache::getMissCount)
+                .description("Existence checks that missed the cache")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("minio.existence.cache.size", existenceCache, ExistenceCache::size)
+                .description("Paths in the existence cache")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,18 @@
+package com.asalavei.cloudfilestorage.storage.minio;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * @param contentType the content type the object was stored with, or {@code null} if unknown
+ */
+public record MinioObject(String name, String contentType, InputStream inputStream) {
+
+    void closeQuietly() {
+        try {
+            inputStream.close();
+        } catch (IOException ignored) {
+            // the object is being discarded, nothing else can be done with it
+        }
+    }
+}
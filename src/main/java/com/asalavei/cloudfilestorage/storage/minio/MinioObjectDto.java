@@ -1,4 +1,10 @@
 package com.asalavei.cloudfilestorage.storage.minio;
 
-public record MinioObjectDto(String name) {
+import java.time.Instant;
+
+/**
+ * @param lastModified the time the object was last written, or {@code null} for a folder that is only a common
+ *                     prefix; the same value {@link MinioRepository#getLastModified} returns for the object
+ */
+public record MinioObjectDto(String name, Instant lastModified) {
 }
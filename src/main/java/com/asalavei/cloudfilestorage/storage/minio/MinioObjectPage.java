@@ -0,0 +1,9 @@
+package com.asalavei.cloudfilestorage.storage.minio;
+
+import java.util.List;
+
+/**
+ * @param truncated whether more objects follow the last one of this page
+ */
+public record MinioObjectPage(List<MinioObjectDto> objects, boolean truncated) {
+}
@@ -0,0 +1,12 @@
+package com.asalavei.cloudfilestorage.storage.minio;
+
+import java.time.Instant;
+
+/**
+ * @param etag        the entity tag of the object without quotes
+ * @param size        the size of the content, which is the original size for a compressed object
+ * @param contentType the content type the object was stored with, or {@code null} if unknown
+ * @param compressed  whether the object is stored compressed, so that byte ranges of it cannot be read
+ */
+public record MinioObjectStat(String etag, Instant lastModified, long size, String contentType, boolean compressed) {
+}
@@ -0,0 +1,7 @@
+package com.asalavei.cloudfilestorage.storage.minio;
+
+/**
+ * Number and total size of a set of objects. Deduplicated objects count with the size of their content.
+ */
+public record MinioObjectsSummary(long count, long bytes) {
+}
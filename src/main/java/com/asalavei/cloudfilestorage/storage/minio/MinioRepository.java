@@ -1,10 +1,15 @@
 package com.asalavei.cloudfilestorage.storage.minio;
 
+import com.asalavei.cloudfilestorage.storage.blob.BlobCatalog;
+import com.asalavei.cloudfilestorage.storage.catalog.ObjectCatalog;
+import com.asalavei.cloudfilestorage.storage.catalog.ObjectMetadata;
+import com.asalavei.cloudfilestorage.storage.compression.ContentCompressor;
 import com.asalavei.cloudfilestorage.storage.exception.ObjectNotFoundException;
 import com.asalavei.cloudfilestorage.util.PathUtil;
 import io.minio.CopyObjectArgs;
 import io.minio.CopySource;
 import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
 import io.minio.ListObjectsArgs;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
@@ -12,19 +17,48 @@ import io.minio.RemoveObjectArgs;
 import io.minio.RemoveObjectsArgs;
 import io.minio.Result;
 import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
 import io.minio.errors.ErrorResponseException;
+import io.minio.errors.ServerException;
 import io.minio.messages.DeleteError;
 import io.minio.messages.DeleteObject;
 import io.minio.messages.Item;
+import io.minio.messages.ListMultipartUploadsResult;
+import io.minio.messages.Part;
+import io.minio.messages.Upload;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Repository;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
@@ -32,6 +66,19 @@ import java.util.Map;
  * <p>
  * MinIO does not throw errors if objects do not exist for operations like deletion or retrieval.
  * This can lead to potential race conditions when checking for object existence before operations.
+ * <p>
+ * When the {@link ObjectCatalog} is enabled, every write is recorded in it, and listings and existence checks are
+ * served from it instead of MinIO.
+ * <p>
+ * When deduplication is enabled, saved content is stored once under {@value BLOB_PREFIX} and its SHA-256 hash,
+ * and the object at the path is an empty pointer to it. Reads resolve pointers through the {@link BlobCatalog}.
+ * <p>
+ * Objects derived from stored content, such as thumbnails, are kept under {@value DERIVED_PREFIX} and are not
+ * recorded in either catalog.
+ * <p>
+ * Compressible content may be stored compressed by the {@link ContentCompressor}. The codec and the original size
+ * are kept in the object metadata, reads decompress such objects transparently, and their sizes are reported as
+ * the original sizes.
  */
 @Slf4j
 @Repository
@@ -39,221 +86,1049 @@ import java.util.Map;
 public class MinioRepository {
 
     private static final String NO_SUCH_KEY = "NoSuchKey";
+    private static final String NO_SUCH_UPLOAD = "NoSuchUpload";
+    private static final int DELETE_BATCH_SIZE = 1000;
+    private static final String BLOB_PREFIX = "blobs/";
+    private static final String BLOB_HASH_METADATA = "sha256";
+    private static final String DERIVED_PREFIX = "derived/";
+    private static final String CODEC_METADATA = "codec";
+    private static final String UNCOMPRESSED_SIZE_METADATA = "uncompressed-size";
+    private static final String USER_METADATA_HEADER_PREFIX = "x-amz-meta-";
+    private static final Set<String> RETRYABLE_ERROR_CODES =
+            Set.of("InternalError", "RequestTimeout", "ServiceUnavailable", "SlowDown");
 
     private final MinioClient minioClient;
+    private final MultipartMinioClient multipartMinioClient;
+    private final ObjectCatalog objectCatalog;
+    private final BlobCatalog blobCatalog;
+    private final ContentCompressor contentCompressor;
+    private final ExistenceCache existenceCache;
+    private final ExecutorService minioExecutor;
+    private final MinioMetrics minioMetrics;
 
-    public void save(String bucketName, String path, InputStream inputStream, long size, String contentType) {
-        try {
-            minioClient.putObject(
-                    PutObjectArgs.builder()
-                            .bucket(bucketName)
-                            .object(path)
-                            .stream(inputStream, size, -1)
-                            .contentType(contentType)
-                            .build()
-            );
-        } catch (Exception e) {
-            throw new MinioOperationException("Failed to save object", e);
-        }
+    @Value("${minio.prefetch-window}")
+    private int prefetchWindow;
+
+    @Value("${minio.copy.parallelism}")
+    private int copyParallelism;
+
+    @Value("${minio.copy.max-attempts}")
+    private int copyMaxAttempts;
+
+    @Value("${minio.copy.retry-backoff}")
+    private Duration copyRetryBackoff;
+
+    @Value("${minio.delete.parallelism}")
+    private int deleteParallelism;
+
+    /**
+     * Saves the content at the path. With deduplication enabled the content is hashed first, and it is uploaded
+     * only if no blob with the same hash exists yet, so saving a duplicate costs a metadata write only.
+     */
+    public void save(String bucketName, String path, InputStreamSource content, long size, String contentType) {
+        minioMetrics.record("save", () -> {
+            try {
+                ObjectMetadata previous = objectCatalog.recordPendingSave(bucketName, path, size, contentType, Instant.now())
+                        .orElse(null);
+
+                try {
+                    if (blobCatalog.isEnabled() && size > 0) {
+                        saveDeduplicated(bucketName, path, content, size, contentType);
+                    } else {
+                        putContent(bucketName, path, path, content, size, contentType);
+                    }
+                } catch (Exception e) {
+                    revertCatalogSave(bucketName, path, previous);
+                    throw e;
+                }
+
+                existenceCache.invalidate(bucketName, path);
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to save object", e);
+            }
+        });
+    }
+
+    /**
+     * Starts a multipart upload of the object. Nothing is visible at the path until the upload is completed.
+     *
+     * @return the id of the upload
+     */
+    public String initiateUpload(String bucketName, String path, String contentType) {
+        return minioMetrics.record("initiate_upload", () -> {
+            try {
+                return multipartMinioClient.initiateMultipartUpload(bucketName, path, contentType);
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to initiate upload", e);
+            }
+        });
+    }
+
+    /**
+     * @return the ETag of the uploaded part, required to complete the upload
+     */
+    public String uploadPart(String bucketName, String path, String uploadId, int partNumber, InputStream data,
+                             long length) {
+        return minioMetrics.record("upload_part", () -> {
+            try {
+                String etag = multipartMinioClient.uploadMultipartPart(bucketName, path, uploadId, partNumber, data, length);
+                minioMetrics.recordUpload(length);
+
+                return etag;
+            } catch (ErrorResponseException e) {
+                throw toUploadException(e, "upload part of");
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to upload part", e);
+            }
+        });
+    }
+
+    /**
+     * Assembles the uploaded parts into the object.
+     *
+     * @param partEtags ETags of all parts by part number
+     */
+    public void completeUpload(String bucketName, String path, String uploadId, Map<Integer, String> partEtags,
+                               long size, String contentType) {
+        minioMetrics.record("complete_upload", () -> {
+            try {
+                Part[] parts = partEtags.entrySet().stream()
+                        .sorted(Map.Entry.comparingByKey())
+                        .map(partEtag -> new Part(partEtag.getKey(), partEtag.getValue()))
+                        .toArray(Part[]::new);
+
+                ObjectMetadata previous = objectCatalog.recordPendingSave(bucketName, path, size, contentType, Instant.now())
+                        .orElse(null);
+
+                try {
+                    multipartMinioClient.completeMultipartUpload(bucketName, path, uploadId, parts);
+                } catch (Exception e) {
+                    revertCatalogSave(bucketName, path, previous);
+                    throw e;
+                }
+
+                existenceCache.invalidate(bucketName, path);
+            } catch (ErrorResponseException e) {
+                throw toUploadException(e, "complete");
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to complete upload", e);
+            }
+        });
+    }
+
+    public void abortUpload(String bucketName, String path, String uploadId) {
+        minioMetrics.record("abort_upload", () -> {
+            try {
+                multipartMinioClient.abortMultipartUpload(bucketName, path, uploadId);
+            } catch (ErrorResponseException e) {
+                throw toUploadException(e, "abort");
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to abort upload", e);
+            }
+        });
+    }
+
+    /**
+     * @return the multipart uploads in progress that were initiated before the given time
+     */
+    public List<MinioUploadDto> listUploads(String bucketName, Instant initiatedBefore) {
+        return minioMetrics.record("list_uploads", () -> {
+            try {
+                List<MinioUploadDto> uploads = new ArrayList<>();
+                String keyMarker = null;
+                String uploadIdMarker = null;
+                ListMultipartUploadsResult result;
+
+                do {
+                    result = multipartMinioClient.listMultipartUploads(bucketName, keyMarker, uploadIdMarker);
+
+                    for (Upload upload : result.uploads()) {
+                        Instant initiated = upload.initiated().toInstant();
+
+                        if (initiated.isBefore(initiatedBefore)) {
+                            uploads.add(new MinioUploadDto(upload.objectName(), upload.uploadId(), initiated));
+                        }
+                    }
+
+                    keyMarker = result.nextKeyMarker();
+                    uploadIdMarker = result.nextUploadIdMarker();
+                } while (result.isTruncated());
+
+                return uploads;
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to list uploads", e);
+            }
+        }, List::size);
     }
 
     public InputStream get(String bucketName, String path) {
-        try {
-            return minioClient.getObject(
-                    GetObjectArgs.builder()
-                            .bucket(bucketName)
-                            .object(path)
-                            .build()
-            );
-        } catch (ErrorResponseException e) {
-            if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
-                throw new ObjectNotFoundException("No object found in MinIO");
+        return get(GetObjectArgs.builder()
+                .bucket(bucketName)
+                .object(resolve(bucketName, path))
+                .build());
+    }
+
+    /**
+     * Returns {@code length} bytes of the object starting at {@code offset}. Ranges of compressed objects cannot be
+     * read, see {@link MinioObjectStat#compressed()}.
+     */
+    public InputStream get(String bucketName, String path, long offset, long length) {
+        return get(GetObjectArgs.builder()
+                .bucket(bucketName)
+                .object(resolve(bucketName, path))
+                .offset(offset)
+                .length(length)
+                .build());
+    }
+
+    public MinioObjectStat stat(String bucketName, String path) {
+        return minioMetrics.record("stat", () -> {
+            try {
+                StatObjectResponse response = minioClient.statObject(
+                        StatObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(resolve(bucketName, path))
+                                .build()
+                );
+
+                String uncompressedSize = response.userMetadata().get(UNCOMPRESSED_SIZE_METADATA);
+
+                return new MinioObjectStat(response.etag(), response.lastModified().toInstant(),
+                        uncompressedSize == null ? response.size() : Long.parseLong(uncompressedSize),
+                        response.contentType(), uncompressedSize != null);
+            } catch (ErrorResponseException e) {
+                if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
+                    throw new ObjectNotFoundException("No object found in MinIO");
+                }
+                throw new MinioOperationException(
+                        String.format("Failed to retrieve metadata of object '%s'. Error code: %s, Message: %s",
+                                path, e.errorResponse().code(), e.errorResponse().message()), e);
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to retrieve metadata of object", e);
             }
-            throw new MinioOperationException(
-                    String.format("Failed to retrieve object '%s'. Error code: %s, Message: %s",
-                            path, e.errorResponse().code(), e.errorResponse().message()), e);
-        } catch (Exception e) {
-            throw new MinioOperationException("Failed to retrieve object");
-        }
+        });
+    }
+
+    /**
+     * Returns the objects under the prefix in listing order. Objects are opened lazily, with a read-ahead
+     * window of {@code minio.prefetch-window} objects, so a folder of any size holds a bounded number of connections.
+     */
+    public PrefetchingObjectIterator getAll(String bucketName, String prefix) {
+        return minioMetrics.record("get_all", () -> {
+            try {
+                Iterator<Result<Item>> results = listObjects(bucketName, prefix, true).iterator();
+
+                if (!results.hasNext()) {
+                    throw new ObjectNotFoundException("No objects found in MinIO");
+                }
+
+                return new PrefetchingObjectIterator(results,
+                        objectNames -> blobCatalog.findHashes(bucketName, objectNames),
+                        (objectName, blobHash) -> open(GetObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(toObjectName(objectName, blobHash))
+                                .build(), objectName),
+                        minioExecutor, prefetchWindow);
+            } catch (ObjectNotFoundException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to retrieve objects", e);
+            }
+        });
+    }
+
+    public List<MinioObjectDto> list(String bucketName, String prefix, boolean recursive) {
+        return minioMetrics.record("list", () -> {
+            try {
+                if (objectCatalog.isEnabled()) {
+                    return objectCatalog.list(bucketName, prefix, recursive).stream()
+                            .map(objectMetadata -> new MinioObjectDto(objectMetadata.getPath(), objectMetadata.getLastModified()))
+                            .toList();
+                }
+
+                Iterable<Result<Item>> results = listObjects(bucketName, prefix, recursive);
+                List<MinioObjectDto> minioObjects = new ArrayList<>();
+
+                for (Result<Item> result : results) {
+                    minioObjects.add(toMinioObject(result.get()));
+                }
+
+                return minioObjects;
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to list objects", e);
+            }
+        }, List::size);
+    }
+
+    /**
+     * Lists at most {@code maxKeys} direct children of the prefix in key order, starting after the given key.
+     * The object of the prefix itself is not included.
+     */
+    public MinioObjectPage list(String bucketName, String prefix, String startAfter, int maxKeys) {
+        return minioMetrics.record("list_page", () -> {
+            try {
+                if (objectCatalog.isEnabled()) {
+                    List<MinioObjectDto> minioObjects = objectCatalog.list(bucketName, prefix, startAfter, maxKeys + 1).stream()
+                            .map(objectMetadata -> new MinioObjectDto(objectMetadata.getPath(), objectMetadata.getLastModified()))
+                            .toList();
+
+                    return toPage(minioObjects, maxKeys);
+                }
+
+                ListObjectsArgs.Builder args = ListObjectsArgs.builder()
+                        .bucket(bucketName)
+                        .prefix(prefix)
+                        .maxKeys(maxKeys + 1);
+
+                if (startAfter != null) {
+                    args.startAfter(startAfter);
+                }
+
+                List<MinioObjectDto> minioObjects = new ArrayList<>();
+
+                for (Result<Item> result : minioClient.listObjects(args.build())) {
+                    Item item = result.get();
+                    String objectName = item.objectName();
+
+                    // a folder is listed once more when the page starts right after it
+                    if (objectName.equals(prefix) || objectName.equals(startAfter)) {
+                        continue;
+                    }
+
+                    minioObjects.add(toMinioObject(item));
+
+                    if (minioObjects.size() > maxKeys) {
+                        break;
+                    }
+                }
+
+                return toPage(minioObjects, maxKeys);
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to list objects", e);
+            }
+        }, page -> page.objects().size());
+    }
+
+    public void copy(String bucketName, String destinationPath, String sourcePath) {
+        minioMetrics.record("copy", () -> {
+            try {
+                copyObject(bucketName, destinationPath, sourcePath);
+
+                objectCatalog.recordCopy(bucketName, destinationPath, sourcePath);
+                blobCatalog.recordCopy(bucketName, destinationPath, sourcePath);
+                existenceCache.invalidate(bucketName, destinationPath);
+            } catch (ErrorResponseException e) {
+                if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
+                    throw new ObjectNotFoundException("No object found to copy");
+                }
+                throw new MinioOperationException(
+                        String.format("Failed to copy object '%s'. Error code: %s, Message: %s",
+                                sourcePath, e.errorResponse().code(), e.errorResponse().message()), e);
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to copy object", e);
+            }
+        });
+    }
+
+    /**
+     * Copies all objects under the source prefix, at most {@code minio.copy.parallelism} of them at a time.
+     * Transient errors are retried. If an object still cannot be copied, the copies made by this call are deleted,
+     * so that a failed copy leaves nothing at the destination.
+     * <p>
+     * Objects already at the destination with the same size are skipped, so a copy interrupted before it finished
+     * is resumed by calling this method again.
+     *
+     * @return the number of source objects
+     */
+    public long copyAll(String bucketName, String destinationPrefix, String sourcePrefix, ProgressListener progressListener) {
+        return minioMetrics.record("copy_all", () -> {
+            Map<String, Long> sourceObjectSizes = new LinkedHashMap<>();
+            Map<String, Long> destinationObjectSizes = new HashMap<>();
+
+            try {
+                for (Result<Item> result : listObjects(bucketName, sourcePrefix, true)) {
+                    Item item = result.get();
+                    sourceObjectSizes.put(item.objectName(), item.size());
+                }
+
+                for (Result<Item> result : listObjects(bucketName, destinationPrefix, true)) {
+                    Item item = result.get();
+                    destinationObjectSizes.put(item.objectName(), item.size());
+                }
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to list objects to copy", e);
+            }
+
+            Set<String> sourceObjectNames = sourceObjectSizes.keySet();
+
+            if (sourceObjectNames.isEmpty()) {
+                throw new ObjectNotFoundException("No objects found to copy");
+            }
+
+            progressListener.onStarted(sourceObjectNames.size());
+
+            Semaphore permits = new Semaphore(copyParallelism);
+            AtomicLong copied = new AtomicLong();
+            AtomicReference<Exception> failure = new AtomicReference<>();
+            Queue<String> destinationObjectNames = new ConcurrentLinkedQueue<>();
+
+            try {
+                for (String sourceObjectName : sourceObjectNames) {
+                    String destinationObjectName = destinationPrefix + sourceObjectName.substring(sourcePrefix.length());
+
+                    if (sourceObjectSizes.get(sourceObjectName).equals(destinationObjectSizes.get(destinationObjectName))) {
+                        progressListener.onProgress(copied.incrementAndGet());
+                        continue;
+                    }
+
+                    permits.acquire();
+
+                    if (failure.get() != null) {
+                        permits.release();
+                        break;
+                    }
+
+                    minioExecutor.execute(() -> {
+                        try {
+                            copyObjectWithRetries(bucketName, destinationObjectName, sourceObjectName);
+                            destinationObjectNames.add(destinationObjectName);
+                            progressListener.onProgress(copied.incrementAndGet());
+                        } catch (Exception e) {
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, e);
+            }
+
+            // waits for the copies still in progress
+            permits.acquireUninterruptibly(copyParallelism);
+            existenceCache.invalidateAll(bucketName, destinationPrefix);
+
+            if (failure.get() != null) {
+                deleteQuietly(bucketName, destinationObjectNames);
+                throw new MinioOperationException(
+                        String.format("Failed to copy objects from '%s' to '%s'", sourcePrefix, destinationPrefix), failure.get());
+            }
+
+            objectCatalog.recordCopyAll(bucketName, destinationPrefix, sourcePrefix);
+            blobCatalog.recordCopyAll(bucketName, destinationPrefix, sourcePrefix);
+
+            return (long) sourceObjectNames.size();
+        }, Long::longValue);
+    }
+
+    /**
+     * @return the deleted object
+     */
+    public MinioObjectsSummary delete(String bucketName, String path) {
+        return minioMetrics.record("delete", () -> {
+            try {
+                long size = stat(bucketName, path).size();
+
+                minioClient.removeObject(
+                        RemoveObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(path)
+                                .build()
+                );
+
+                objectCatalog.recordDelete(bucketName, path);
+                blobCatalog.recordDelete(bucketName, path)
+                        .ifPresent(hash -> removeBlobIfUnreferenced(bucketName, hash));
+                existenceCache.invalidate(bucketName, path);
+
+                return new MinioObjectsSummary(1, size);
+            } catch (ObjectNotFoundException e) {
+                throw new ObjectNotFoundException("No object found to delete");
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to delete object", e);
+            }
+        });
+    }
+
+    /**
+     * Deletes all objects under the prefix while they are being listed. Keys are sent in batches of up to
+     * {@value DELETE_BATCH_SIZE}, the limit of a single S3 request, with at most {@code minio.delete.parallelism}
+     * batches in flight, so memory use does not depend on the folder size. No further batches are sent after
+     * a batch fails. The objects of each batch are removed from the catalogs as soon as the batch is deleted, so
+     * a failed deletion leaves the catalogs matching the objects that remain.
+     *
+     * @return the deleted objects
+     */
+    public MinioObjectsSummary deleteAll(String bucketName, String prefix) {
+        return minioMetrics.record("delete_all", () -> {
+            // pointers to deduplicated content are listed as empty objects, and batches remove their references
+            long referencedBytes = blobCatalog.sumReferencedBytes(bucketName, prefix);
+            Semaphore permits = new Semaphore(deleteParallelism);
+            Queue<String> batchErrors = new ConcurrentLinkedQueue<>();
+            List<String> batch = new ArrayList<>(DELETE_BATCH_SIZE);
+            long listed = 0;
+            long listedBytes = 0;
+            int batchNumber = 0;
+
+            try {
+                for (Result<Item> result : listObjectsWithMetadata(bucketName, prefix)) {
+                    Item item = result.get();
+                    batch.add(item.objectName());
+                    listed++;
+                    listedBytes += getContentSize(item);
+
+                    if (batch.size() == DELETE_BATCH_SIZE) {
+                        submitDeleteBatch(bucketName, batch, ++batchNumber, permits, batchErrors);
+                        batch = new ArrayList<>(DELETE_BATCH_SIZE);
+                    }
+
+                    if (!batchErrors.isEmpty()) {
+                        break;
+                    }
+                }
+
+                if (!batch.isEmpty() && batchErrors.isEmpty()) {
+                    submitDeleteBatch(bucketName, batch, ++batchNumber, permits, batchErrors);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batchErrors.add("interrupted while listing objects");
+            } catch (Exception e) {
+                log.warn("Failed to list objects to delete under prefix '{}'", prefix, e);
+                batchErrors.add("failed to list objects: " + e.getMessage());
+            }
+
+            // waits for the batches still in progress
+            permits.acquireUninterruptibly(deleteParallelism);
+            existenceCache.invalidateAll(bucketName, prefix);
+
+            if (listed == 0 && batchErrors.isEmpty()) {
+                // rows left behind by earlier failures would keep showing a folder that cannot be deleted
+                objectCatalog.recordDeleteAll(bucketName, prefix);
+                throw new ObjectNotFoundException("No objects found to delete");
+            }
+
+            if (!batchErrors.isEmpty()) {
+                throw new MinioOperationException(
+                        String.format("Errors occurred while deleting objects under '%s': %s", prefix, String.join("; ", batchErrors)));
+            }
+
+            objectCatalog.recordDeleteAll(bucketName, prefix);
+            blobCatalog.recordDeleteAll(bucketName, prefix)
+                    .forEach(hash -> removeBlobIfUnreferenced(bucketName, hash));
+
+            return new MinioObjectsSummary(listed, listedBytes + referencedBytes);
+        }, MinioObjectsSummary::count);
+    }
+
+    /**
+     * Counts all objects under the prefix and their total size.
+     */
+    public MinioObjectsSummary summarize(String bucketName, String prefix) {
+        return minioMetrics.record("summarize", () -> {
+            try {
+                long count = 0;
+                long bytes = 0;
+
+                for (Result<Item> result : listObjectsWithMetadata(bucketName, prefix)) {
+                    count++;
+                    bytes += getContentSize(result.get());
+                }
+
+                // pointers to deduplicated content are listed as empty objects
+                return new MinioObjectsSummary(count, bytes + blobCatalog.sumReferencedBytes(bucketName, prefix));
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to summarize objects", e);
+            }
+        }, MinioObjectsSummary::count);
     }
 
-    public Map<String, InputStream> getAll(String bucketName, String prefix) {
+    /**
+     * @return the time the object was last written, as recorded in the catalog when it is enabled
+     */
+    public Instant getLastModified(String bucketName, String path) {
+        if (!objectCatalog.isEnabled()) {
+            return stat(bucketName, path).lastModified();
+        }
+
         try {
-            Map<String, InputStream> inputStreams = new HashMap<>();
-            Iterable<Result<Item>> results = listObjects(bucketName, prefix, true);
+            return objectCatalog.findLastModified(bucketName, path)
+                    .orElseThrow(() -> new ObjectNotFoundException("No object found in catalog"));
+        } catch (DataAccessException e) {
+            throw new MinioOperationException("Failed to retrieve metadata of object", e);
+        }
+    }
 
-            for (Result<Item> result : results) {
-                String objectName = result.get().objectName();
-                InputStream inputStream = get(bucketName, objectName);
-                inputStreams.put(objectName, inputStream);
+    public void saveDerived(String bucketName, String name, byte[] content, String contentType) {
+        minioMetrics.record("save_derived", () -> {
+            try {
+                putObject(bucketName, DERIVED_PREFIX + name, new ByteArrayInputStream(content), content.length,
+                        contentType, Map.of());
+                minioMetrics.recordUpload(content.length);
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to save derived object", e);
             }
+        });
+    }
 
-            if (inputStreams.isEmpty()) {
-                throw new ObjectNotFoundException("No objects found in MinIO");
+    public InputStream getDerived(String bucketName, String name) {
+        return get(GetObjectArgs.builder()
+                .bucket(bucketName)
+                .object(DERIVED_PREFIX + name)
+                .build());
+    }
+
+    /**
+     * Deletes all derived objects under the prefix. Failures are only logged, since derived objects can be
+     * created again from the content they were derived from.
+     */
+    public void deleteAllDerived(String bucketName, String prefix) {
+        minioMetrics.record("delete_derived", () -> {
+            List<String> objectNames = new ArrayList<>();
+
+            try {
+                for (Result<Item> result : listObjects(bucketName, DERIVED_PREFIX + prefix, true)) {
+                    objectNames.add(result.get().objectName());
+                }
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to list derived objects", e);
             }
 
-            return inputStreams;
-        } catch (ObjectNotFoundException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new MinioOperationException("Failed to retrieve objects", e);
+            deleteQuietly(bucketName, objectNames);
+        });
+    }
+
+    /**
+     * Checks whether the object exists, or for a folder path whether any object exists under it.
+     * Results are served from the {@link ExistenceCache} when possible.
+     */
+    public boolean isObjectExists(String bucketName, String path) {
+        Boolean cached = existenceCache.get(bucketName, path);
+
+        if (cached != null) {
+            return cached;
         }
+
+        long cacheVersion = existenceCache.getVersion();
+        boolean exists = checkObjectExists(bucketName, path);
+        existenceCache.put(bucketName, path, exists, cacheVersion);
+
+        return exists;
     }
 
-    public List<MinioObjectDto> list(String bucketName, String prefix, boolean recursive) {
+    /**
+     * Records every object of the bucket in the catalog.
+     *
+     * @return the number of imported objects
+     */
+    public long importIntoCatalog(String bucketName) {
         try {
-            Iterable<Result<Item>> results = listObjects(bucketName, prefix, recursive);
-            List<MinioObjectDto> minioObjects = new ArrayList<>();
+            long imported = 0;
 
-            for (Result<Item> result : results) {
+            for (Result<Item> result : listObjectsWithMetadata(bucketName, "")) {
                 Item item = result.get();
-                minioObjects.add(new MinioObjectDto(item.objectName()));
+
+                if (item.objectName().startsWith(BLOB_PREFIX) || item.objectName().startsWith(DERIVED_PREFIX)) {
+                    continue;
+                }
+
+                objectCatalog.recordSave(bucketName, item.objectName(), getContentSize(item), null, item.lastModified().toInstant());
+                imported++;
             }
 
-            return minioObjects;
+            return imported;
         } catch (Exception e) {
-            throw new MinioOperationException("Failed to list objects", e);
+            throw new MinioOperationException("Failed to import objects into catalog", e);
         }
     }
 
-    public void copy(String bucketName, String destinationPath, String sourcePath) {
-        try {
-            CopySource source = CopySource.builder()
-                    .bucket(bucketName)
-                    .object(sourcePath)
-                    .build();
+    private boolean checkObjectExists(String bucketName, String path) {
+        return minioMetrics.record("exists", () -> {
+            try {
+                if (objectCatalog.isEnabled()) {
+                    return objectCatalog.exists(bucketName, path);
+                }
 
-            minioClient.copyObject(
-                    CopyObjectArgs.builder()
-                            .bucket(bucketName)
-                            .object(destinationPath)
-                            .source(source)
-                            .build()
-            );
-        } catch (ErrorResponseException e) {
-            if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
-                throw new ObjectNotFoundException("No object found to copy");
+                if (path.endsWith(PathUtil.DELIMITER)) {
+                    Iterable<Result<Item>> results = minioClient.listObjects(
+                            ListObjectsArgs.builder()
+                                    .bucket(bucketName)
+                                    .prefix(path)
+                                    .maxKeys(1)
+                                    .build()
+                    );
+
+                    return results.iterator().hasNext();
+                }
+
+                minioClient.statObject(
+                        StatObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(path)
+                                .build()
+                );
+
+                return true;
+            } catch (ErrorResponseException e) {
+                if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
+                    return false;
+                }
+                throw new MinioOperationException(
+                        String.format("Failed to check existence of object '%s'. Error code: %s, Message: %s",
+                                path, e.errorResponse().code(), e.errorResponse().message()), e);
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to check existence of object", e);
             }
-            throw new MinioOperationException(
-                    String.format("Failed to copy object '%s'. Error code: %s, Message: %s",
-                            sourcePath, e.errorResponse().code(), e.errorResponse().message()), e);
-        } catch (Exception e) {
-            throw new MinioOperationException("Failed to copy object", e);
+        });
+    }
+
+    private void recordBatchDelete(String bucketName, List<String> objectNames) {
+        try {
+            objectCatalog.recordDeleteAll(bucketName, objectNames);
+            blobCatalog.recordDeleteAll(bucketName, objectNames)
+                    .forEach(hash -> removeBlobIfUnreferenced(bucketName, hash));
+        } catch (DataAccessException e) {
+            log.error("Failed to record deletion of {} objects from bucket '{}' in the catalogs", objectNames.size(), bucketName, e);
         }
     }
 
-    public void copyAll(String bucketName, String destinationPrefix, String sourcePrefix) {
+    private void revertCatalogSave(String bucketName, String path, ObjectMetadata previous) {
         try {
-            Iterable<Result<Item>> results = listObjects(bucketName, sourcePrefix, true);
+            objectCatalog.revertSave(bucketName, path, previous);
+        } catch (DataAccessException e) {
+            log.error("Failed to revert catalog record of object '{}' in bucket '{}' after its save failed", path, bucketName, e);
+        }
+    }
 
-            if (!results.iterator().hasNext()) {
-                throw new ObjectNotFoundException("No objects found to copy");
-            }
+    private InputStream get(GetObjectArgs args) {
+        return open(args, args.object()).inputStream();
+    }
 
-            for (Result<Item> result : results) {
-                String sourceObjectName = result.get().objectName();
-                String relativePath = sourceObjectName.substring(sourcePrefix.length());
-                String destinationObjectName = destinationPrefix + relativePath;
+    /**
+     * @param name the name to report the object under, which differs from the object read for deduplicated content
+     */
+    private MinioObject open(GetObjectArgs args, String name) {
+        return minioMetrics.record("get", () -> {
+            try {
+                GetObjectResponse response = minioClient.getObject(args);
+                String codec = response.headers().get(USER_METADATA_HEADER_PREFIX + CODEC_METADATA);
+                InputStream inputStream = minioMetrics.meterDownload(response);
 
-                copy(bucketName, destinationObjectName, sourceObjectName);
+                return new MinioObject(name, response.headers().get("Content-Type"),
+                        codec == null ? inputStream : contentCompressor.decompress(inputStream, codec));
+            } catch (ErrorResponseException e) {
+                if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
+                    throw new ObjectNotFoundException("No object found in MinIO");
+                }
+                throw new MinioOperationException(
+                        String.format("Failed to retrieve object '%s'. Error code: %s, Message: %s",
+                                args.object(), e.errorResponse().code(), e.errorResponse().message()), e);
+            } catch (Exception e) {
+                throw new MinioOperationException("Failed to retrieve object");
             }
-        } catch (ObjectNotFoundException e) {
-            throw e;
+        });
+    }
+
+    private void saveDeduplicated(String bucketName, String path, InputStreamSource content, long size,
+                                  String contentType) throws Exception {
+        String hash = hash(content);
+        boolean acquired = blobCatalog.acquire(bucketName, hash);
+
+        if (!acquired) {
+            putContent(bucketName, BLOB_PREFIX + hash, path, content, size, contentType);
+        }
+
+        try {
+            putObject(bucketName, path, InputStream.nullInputStream(), 0, contentType, Map.of(BLOB_HASH_METADATA, hash));
         } catch (Exception e) {
-            throw new MinioOperationException("Failed to copy objects", e);
+            discardBlob(bucketName, hash, size, acquired);
+            throw e;
         }
+
+        blobCatalog.recordSave(bucketName, path, hash, size, acquired)
+                .ifPresent(previousHash -> removeBlobIfUnreferenced(bucketName, previousHash));
     }
 
-    public void delete(String bucketName, String path) {
+    /**
+     * Gives up the blob of a save whose pointer could not be written, removing it unless other paths reference it.
+     * A blob uploaded for the save has no row yet, so one is recorded first to remove it under the row lock.
+     */
+    private void discardBlob(String bucketName, String hash, long size, boolean acquired) {
         try {
-            if (!isObjectExists(bucketName, path)) {
-                throw new ObjectNotFoundException("No object found to delete");
+            if (acquired) {
+                blobCatalog.release(bucketName, hash);
+            } else {
+                blobCatalog.recordUnreferenced(bucketName, hash, size);
             }
+        } catch (DataAccessException e) {
+            log.warn("Failed to give up blob '{}' in bucket '{}'", hash, bucketName, e);
+            return;
+        }
 
-            minioClient.removeObject(
-                    RemoveObjectArgs.builder()
-                            .bucket(bucketName)
-                            .object(path)
-                            .build()
-            );
-        } catch (ObjectNotFoundException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new MinioOperationException("Failed to delete object", e);
+        removeBlobIfUnreferenced(bucketName, hash);
+    }
+
+    /**
+     * Hashes the content in a separate pass, so a duplicate is recognized before any of it is sent to MinIO.
+     */
+    private static String hash(InputStreamSource content) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        try (InputStream inputStream = new DigestInputStream(content.getInputStream(), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return the name of the object holding the content of the path
+     */
+    private String resolve(String bucketName, String path) {
+        try {
+            return toObjectName(path, blobCatalog.findHash(bucketName, path).orElse(null));
+        } catch (DataAccessException e) {
+            throw new MinioOperationException("Failed to resolve content of object", e);
         }
     }
 
-    public void deleteAll(String bucketName, String prefix) {
+    private static String toObjectName(String path, String blobHash) {
+        return blobHash == null ? path : BLOB_PREFIX + blobHash;
+    }
+
+    private void removeBlobIfUnreferenced(String bucketName, String hash) {
         try {
-            Iterable<Result<Item>> results = listObjects(bucketName, prefix, true);
-            List<DeleteObject> objectsToDelete = new ArrayList<>();
+            blobCatalog.removeIfUnreferenced(bucketName, hash, unreferencedHash -> {
+                try {
+                    minioClient.removeObject(
+                            RemoveObjectArgs.builder()
+                                    .bucket(bucketName)
+                                    .object(BLOB_PREFIX + unreferencedHash)
+                                    .build()
+                    );
+                } catch (Exception e) {
+                    throw new MinioOperationException("Failed to remove blob", e);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Failed to remove unreferenced blob '{}' from bucket '{}'", hash, bucketName, e);
+        }
+    }
+
+    /**
+     * Stores the content compressed if it is compressible and compressing it saves space, and as is otherwise.
+     * Content saved with {@link #save} is limited to the size of a form upload, so it is compressed in memory.
+     *
+     * @param path the path the content is saved at, to judge from its extension whether it is compressible
+     */
+    private void putContent(String bucketName, String objectName, String path, InputStreamSource content, long size,
+                            String contentType) throws Exception {
+        if (contentCompressor.isCompressible(path, contentType, size)) {
+            byte[] compressed;
 
-            for (Result<Item> result : results) {
-                objectsToDelete.add(new DeleteObject(result.get().objectName()));
+            try (InputStream inputStream = content.getInputStream()) {
+                compressed = contentCompressor.compress(inputStream, size);
             }
 
-            if (objectsToDelete.isEmpty()) {
-                throw new ObjectNotFoundException("No objects found to delete");
+            if (compressed.length < size) {
+                putObject(bucketName, objectName, new ByteArrayInputStream(compressed), compressed.length, contentType,
+                        Map.of(CODEC_METADATA, ContentCompressor.CODEC, UNCOMPRESSED_SIZE_METADATA, Long.toString(size)));
+                minioMetrics.recordUpload(compressed.length);
+                return;
             }
+        }
 
+        try (InputStream inputStream = content.getInputStream()) {
+            putObject(bucketName, objectName, inputStream, size, contentType, Map.of());
+        }
+
+        minioMetrics.recordUpload(size);
+    }
+
+    private void putObject(String bucketName, String path, InputStream inputStream, long size, String contentType,
+                           Map<String, String> userMetadata) throws Exception {
+        minioClient.putObject(
+                PutObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(path)
+                        .stream(inputStream, size, -1)
+                        .contentType(contentType)
+                        .userMetadata(userMetadata)
+                        .build()
+        );
+    }
+
+    private RuntimeException toUploadException(ErrorResponseException e, String operation) {
+        if (NO_SUCH_UPLOAD.equals(e.errorResponse().code())) {
+            return new ObjectNotFoundException("No upload found in MinIO");
+        }
+
+        return new MinioOperationException(
+                String.format("Failed to %s upload. Error code: %s, Message: %s",
+                        operation, e.errorResponse().code(), e.errorResponse().message()), e);
+    }
+
+    private void copyObject(String bucketName, String destinationPath, String sourcePath) throws Exception {
+        CopySource source = CopySource.builder()
+                .bucket(bucketName)
+                .object(sourcePath)
+                .build();
+
+        minioClient.copyObject(
+                CopyObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(destinationPath)
+                        .source(source)
+                        .build()
+        );
+    }
+
+    private void copyObjectWithRetries(String bucketName, String destinationPath, String sourcePath) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                copyObject(bucketName, destinationPath, sourcePath);
+                return;
+            } catch (ErrorResponseException | ServerException | IOException e) {
+                if (attempt >= copyMaxAttempts || !isRetryable(e)) {
+                    throw e;
+                }
+
+                log.debug("Retrying copy of object '{}' to '{}' after attempt {}", sourcePath, destinationPath, attempt, e);
+                Thread.sleep(copyRetryBackoff.toMillis() * attempt);
+            }
+        }
+    }
+
+    private boolean isRetryable(Exception e) {
+        return !(e instanceof ErrorResponseException errorResponseException)
+                || RETRYABLE_ERROR_CODES.contains(errorResponseException.errorResponse().code());
+    }
+
+    private void deleteQuietly(String bucketName, Collection<String> objectNames) {
+        if (objectNames.isEmpty()) {
+            return;
+        }
+
+        try {
             Iterable<Result<DeleteError>> errors = minioClient.removeObjects(
                     RemoveObjectsArgs.builder()
                             .bucket(bucketName)
-                            .objects(objectsToDelete)
+                            .objects(objectNames.stream().map(DeleteObject::new).toList())
                             .build()
             );
 
-            List<String> errorMessages = new ArrayList<>();
-
             for (Result<DeleteError> error : errors) {
                 DeleteError deleteError = error.get();
-                errorMessages.add(String.format("Failed to delete object: '%s' - '%s'",
-                        deleteError.objectName(), deleteError.message()));
+                log.warn("Failed to delete object '{}': {}", deleteError.objectName(), deleteError.message());
             }
-
-            if (!errorMessages.isEmpty()) {
-                throw new MinioOperationException(
-                        String.format("Errors occurred while deleting objects: %s", String.join(", ", errorMessages)));
-            }
-        } catch (ObjectNotFoundException | MinioOperationException e) {
-            throw e;
         } catch (Exception e) {
-            throw new MinioOperationException("Failed to delete objects", e);
+            log.warn("Failed to delete {} objects from bucket '{}'", objectNames.size(), bucketName, e);
         }
     }
 
-    public boolean isObjectExists(String bucketName, String path) {
-        try {
-            if (path.endsWith(PathUtil.DELIMITER)) {
-                Iterable<Result<Item>> results = minioClient.listObjects(
-                        ListObjectsArgs.builder()
-                                .bucket(bucketName)
-                                .prefix(path)
-                                .maxKeys(1)
-                                .build()
-                );
+    private void submitDeleteBatch(String bucketName, List<String> batch, int batchNumber, Semaphore permits,
+                                   Queue<String> batchErrors) throws InterruptedException {
+        permits.acquire();
 
-                return results.iterator().hasNext();
+        minioExecutor.execute(() -> {
+            try {
+                deleteBatch(bucketName, batch, batchNumber, batchErrors);
+            } finally {
+                permits.release();
             }
+        });
+    }
 
-            minioClient.statObject(
-                    StatObjectArgs.builder()
+    /**
+     * Deletes a batch of objects and adds a summary of its errors, if any, to {@code batchErrors}.
+     */
+    private void deleteBatch(String bucketName, List<String> batch, int batchNumber, Queue<String> batchErrors) {
+        try {
+            // objects are deleted only while the results are iterated
+            Iterable<Result<DeleteError>> errors = minioClient.removeObjects(
+                    RemoveObjectsArgs.builder()
                             .bucket(bucketName)
-                            .object(path)
+                            .objects(batch.stream().map(DeleteObject::new).toList())
                             .build()
             );
 
-            return true;
-        } catch (ErrorResponseException e) {
-            if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
-                return false;
+            Set<String> failed = new HashSet<>();
+            String firstError = null;
+
+            for (Result<DeleteError> error : errors) {
+                DeleteError deleteError = error.get();
+                failed.add(deleteError.objectName());
+
+                if (firstError == null) {
+                    firstError = String.format("'%s' - '%s'", deleteError.objectName(), deleteError.message());
+                }
+            }
+
+            recordBatchDelete(bucketName, batch.stream()
+                    .filter(objectName -> !failed.contains(objectName))
+                    .toList());
+
+            if (!failed.isEmpty()) {
+                batchErrors.add(String.format("batch %d: %d of %d objects failed, first %s",
+                        batchNumber, failed.size(), batch.size(), firstError));
             }
-            throw new MinioOperationException(
-                    String.format("Failed to check existence of object '%s'. Error code: %s, Message: %s",
-                            path, e.errorResponse().code(), e.errorResponse().message()), e);
         } catch (Exception e) {
-            throw new MinioOperationException("Failed to check existence of object", e);
+            log.warn("Failed to delete batch {} of {} objects from bucket '{}'", batchNumber, batch.size(), bucketName, e);
+            batchErrors.add(String.format("batch %d: %s", batchNumber, e.getMessage()));
+        }
+    }
+
+    /**
+     * Listings report the modification time in milliseconds, while object headers carry whole seconds only,
+     * so it is truncated to match {@link #getLastModified}.
+     */
+    private static MinioObjectDto toMinioObject(Item item) {
+        Instant lastModified = item.isDir() ? null : item.lastModified().toInstant().truncatedTo(ChronoUnit.SECONDS);
+
+        return new MinioObjectDto(item.objectName(), lastModified);
+    }
+
+    private MinioObjectPage toPage(List<MinioObjectDto> minioObjects, int maxKeys) {
+        if (minioObjects.size() > maxKeys) {
+            return new MinioObjectPage(minioObjects.subList(0, maxKeys), true);
+        }
+
+        return new MinioObjectPage(minioObjects, false);
+    }
+
+    /**
+     * Lists all objects under the prefix with their user metadata, which MinIO includes in listings on request.
+     */
+    private Iterable<Result<Item>> listObjectsWithMetadata(String bucketName, String prefix) {
+        return minioClient.listObjects(
+                ListObjectsArgs.builder()
+                        .bucket(bucketName)
+                        .prefix(prefix)
+                        .recursive(true)
+                        .includeUserMetadata(true)
+                        .build()
+        );
+    }
+
+    /**
+     * @return the original size of a compressed object, or the stored size of any other object
+     */
+    private static long getContentSize(Item item) {
+        Map<String, String> userMetadata = item.userMetadata();
+
+        if (userMetadata != null) {
+            for (Map.Entry<String, String> entry : userMetadata.entrySet()) {
+                String key = entry.getKey().toLowerCase(Locale.ROOT);
+
+                // listings report metadata keys with their header prefix
+                if (key.equals(UNCOMPRESSED_SIZE_METADATA) || key.equals(USER_METADATA_HEADER_PREFIX + UNCOMPRESSED_SIZE_METADATA)) {
+                    return Long.parseLong(entry.getValue());
+                }
+            }
         }
+
+        return item.size();
     }
 
     private Iterable<Result<Item>> listObjects(String bucketName, String prefix, boolean recursive) {
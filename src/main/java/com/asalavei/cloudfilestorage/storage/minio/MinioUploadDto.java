@@ -0,0 +1,9 @@
+package com.asalavei.cloudfilestorage.storage.minio;
+
+import java.time.Instant;
+
+/**
+ * A multipart upload in progress.
+ */
+public record MinioUploadDto(String path, String uploadId, Instant initiated) {
+}
@@ -0,0 +1,80 @@
+package com.asalavei.cloudfilestorage.storage.minio;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.messages.ListMultipartUploadsResult;
+import io.minio.messages.Part;
+
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Exposes the S3 multipart upload API, which {@link MinioAsyncClient} only offers to subclasses.
+ * <p>
+ * {@code putObject} hides multipart uploads behind a single stream. Resumable uploads need to create the upload,
+ * send parts and complete or abort it in separate requests.
+ */
+public class MultipartMinioClient extends MinioAsyncClient {
+
+    public MultipartMinioClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    public String initiateMultipartUpload(String bucketName, String objectName, String contentType)
+            throws Exception {
+        Multimap<String, String> headers = HashMultimap.create();
+
+        if (contentType != null) {
+            headers.put("Content-Type", contentType);
+        }
+
+        return await(createMultipartUploadAsync(bucketName, null, objectName, headers, null))
+                .result()
+                .uploadId();
+    }
+
+    /**
+     * Sends exactly {@code length} bytes of the stream as the part. The SDK reads the part into memory to sign it,
+     * so every part in flight takes up to its length of heap.
+     *
+     * @return the ETag of the uploaded part
+     */
+    public String uploadMultipartPart(String bucketName, String objectName, String uploadId, int partNumber,
+                                      InputStream data, long length) throws Exception {
+        return await(uploadPartAsync(bucketName, null, objectName, data, length, uploadId, partNumber, null, null))
+                .etag();
+    }
+
+    public ObjectWriteResponse completeMultipartUpload(String bucketName, String objectName, String uploadId,
+                                                       Part[] parts) throws Exception {
+        return await(completeMultipartUploadAsync(bucketName, null, objectName, uploadId, parts, null, null));
+    }
+
+    /**
+     * Returns one page of the multipart uploads in progress, following the given markers.
+     */
+    public ListMultipartUploadsResult listMultipartUploads(String bucketName, String keyMarker, String uploadIdMarker)
+            throws Exception {
+        return await(listMultipartUploadsAsync(bucketName, null, null, null, keyMarker, null, null, uploadIdMarker,
+                null, null))
+                .result();
+    }
+
+    public void abortMultipartUpload(String bucketName, String objectName, String uploadId) throws Exception {
+        await(abortMultipartUploadAsync(bucketName, null, objectName, uploadId, null, null));
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.asalavei.cloudfilestorage.storage.minio;
+
+import io.minio.Result;
+import io.minio.messages.Item;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Iterates over the objects of a listing, opening each object only shortly before it is consumed.
+ * <p>
+ * At most {@code window} upcoming objects are opened in parallel while the caller is reading the current one,
+ * so the number of simultaneously open connections stays bounded regardless of how many objects are listed.
+ * The blob hashes of deduplicated objects are looked up in batches of the same size as objects are listed, rather
+ * than for the whole listing up front. The iterator must be closed to release the objects that were prefetched but not consumed.
+ */
+public class PrefetchingObjectIterator implements Iterator<MinioObject>, AutoCloseable {
+
+    private final Iterator<Result<Item>> listing;
+    private final Function<List<String>, Map<String, String>> blobHashLookup;
+    private final BiFunction<String, String, MinioObject> opener;
+    private final Executor executor;
+    private final int window;
+    private final Deque<CompletableFuture<MinioObject>> prefetched = new ArrayDeque<>();
+    private final Deque<String> listedNames = new ArrayDeque<>();
+    private Map<String, String> listedBlobHashes = Map.of();
+
+    /**
+     * @param blobHashLookup returns the blob hashes of those of the object names that reference a blob
+     * @param opener         opens an object by its name and blob hash, which is null for a plain object
+     */
+    PrefetchingObjectIterator(Iterator<Result<Item>> listing,
+                              Function<List<String>, Map<String, String>> blobHashLookup,
+                              BiFunction<String, String, MinioObject> opener, Executor executor, int window) {
+        this.listing = listing;
+        this.blobHashLookup = blobHashLookup;
+        this.opener = opener;
+        this.executor = executor;
+        this.window = Math.max(1, window);
+    }
+
+    @Override
+    public boolean hasNext() {
+        prefetch();
+        return !prefetched.isEmpty();
+    }
+
+    @Override
+    public MinioObject next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        CompletableFuture<MinioObject> next = prefetched.removeFirst();
+        prefetch();
+
+        return await(next);
+    }
+
+    @Override
+    public void close() {
+        prefetched.forEach(future -> future.thenAccept(MinioObject::closeQuietly));
+        prefetched.clear();
+    }
+
+    private void prefetch() {
+        while (prefetched.size() < window && (!listedNames.isEmpty() || listing.hasNext())) {
+            if (listedNames.isEmpty()) {
+                listNextBatch();
+            }
+
+            String objectName = listedNames.removeFirst();
+            String blobHash = listedBlobHashes.get(objectName);
+            prefetched.addLast(CompletableFuture.supplyAsync(() -> opener.apply(objectName, blobHash), executor));
+        }
+    }
+
+    private void listNextBatch() {
+        List<String> objectNames = new ArrayList<>(window);
+
+        while (objectNames.size() < window && listing.hasNext()) {
+            objectNames.add(getObjectName(listing.next()));
+        }
+
+        listedNames.addAll(objectNames);
+        listedBlobHashes = blobHashLookup.apply(objectNames);
+    }
+
+    private String getObjectName(Result<Item> result) {
+        try {
+            return result.get().objectName();
+        } catch (Exception e) {
+            throw new MinioOperationException("Failed to list objects", e);
+        }
+    }
+
+    private MinioObject await(CompletableFuture<MinioObject> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new MinioOperationException("Failed to retrieve object", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.asalavei.cloudfilestorage.storage.minio;
+
+/**
+ * Receives the progress of an operation over many objects. Progress may be reported from several threads.
+ */
+public interface ProgressListener {
+
+    ProgressListener NONE = new ProgressListener() {
+        @Override
+        public void onStarted(long total) {
+        }
+
+        @Override
+        public void onProgress(long done) {
+        }
+    };
+
+    /**
+     * @param total the number of objects the operation has to process
+     */
+    void onStarted(long total);
+
+    /**
+     * @param done the number of objects processed so far
+     */
+    void onProgress(long done);
+}
@@ -0,0 +1,20 @@
+package com.asalavei.cloudfilestorage.storage.ratelimit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a handler whose requests take {@code storage.rate-limit.expensive-cost} tokens from the rate limit of the
+ * user, since they list or copy whole folders, rather than {@code storage.rate-limit.cheap-cost}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExpensiveOperation {
+
+    /**
+     * @return whether only requests whose path parameter is a folder are expensive
+     */
+    boolean foldersOnly() default false;
+}
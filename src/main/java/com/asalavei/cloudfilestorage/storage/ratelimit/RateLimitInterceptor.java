@@ -0,0 +1,69 @@
+package com.asalavei.cloudfilestorage.storage.ratelimit;
+
+import com.asalavei.cloudfilestorage.security.UserPrincipal;
+import com.asalavei.cloudfilestorage.storage.exception.RateLimitExceededException;
+import com.asalavei.cloudfilestorage.util.PathUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+
+import static com.asalavei.cloudfilestorage.util.Constants.PATH_PARAM;
+
+/**
+ * Charges every storage request of a signed-in user against their rate limit and rejects it with
+ * {@link RateLimitExceededException} once the limit is exhausted. Handlers marked with {@link ExpensiveOperation}
+ * cost more than the rest.
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private final RateLimiter rateLimiter;
+
+    @Value("${storage.rate-limit.cheap-cost}")
+    private int cheapCost;
+
+    @Value("${storage.rate-limit.expensive-cost}")
+    private int expensiveCost;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)
+                || !(request.getUserPrincipal() instanceof Authentication authentication)
+                || !(authentication.getPrincipal() instanceof UserPrincipal userPrincipal)) {
+            return true;
+        }
+
+        Duration retryAfter = rateLimiter.tryAcquire(userPrincipal.getId(), getCost(request, handlerMethod));
+
+        if (!retryAfter.isZero()) {
+            long retryAfterSeconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+            throw new RateLimitExceededException("Too many requests. Please try again in %d seconds"
+                    .formatted(retryAfterSeconds), retryAfterSeconds);
+        }
+
+        return true;
+    }
+
+    private int getCost(HttpServletRequest request, HandlerMethod handlerMethod) {
+        ExpensiveOperation expensiveOperation = handlerMethod.getMethodAnnotation(ExpensiveOperation.class);
+
+        if (expensiveOperation == null) {
+            return cheapCost;
+        }
+
+        if (expensiveOperation.foldersOnly()) {
+            String path = request.getParameter(PATH_PARAM);
+            return path != null && PathUtil.isFolder(path) ? expensiveCost : cheapCost;
+        }
+
+        return expensiveCost;
+    }
+}
@@ -0,0 +1,64 @@
+package com.asalavei.cloudfilestorage.storage.ratelimit;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Limits the storage requests of each user with a token bucket in Redis, shared by all nodes.
+ * <p>
+ * A bucket holds up to {@code storage.rate-limit.capacity} tokens and is refilled with
+ * {@code storage.rate-limit.refill-rate} tokens per second. A request takes tokens according to its cost, so a
+ * user may burst after being idle but cannot keep MinIO busy for everyone else. If Redis is unavailable, requests
+ * are let through, since failing them would turn a Redis outage into a storage outage.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RateLimiter {
+
+    private static final String KEY_PREFIX = "storage:rate-limit:";
+
+    private static final RedisScript<Long> ACQUIRE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/rate-limit-acquire.lua"), Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${storage.rate-limit.enabled}")
+    private boolean enabled;
+
+    @Value("${storage.rate-limit.capacity}")
+    private int capacity;
+
+    @Value("${storage.rate-limit.refill-rate}")
+    private double refillRate;
+
+    /**
+     * Takes tokens from the bucket of the user, if it holds enough.
+     *
+     * @param cost the tokens to take, at most the capacity of a bucket
+     * @return zero if the tokens were taken, otherwise the time until the bucket holds enough of them
+     */
+    public Duration tryAcquire(Long userId, int cost) {
+        if (!enabled) {
+            return Duration.ZERO;
+        }
+
+        try {
+            Long waitMillis = redisTemplate.execute(ACQUIRE_SCRIPT, List.of(KEY_PREFIX + userId),
+                    Integer.toString(capacity), Double.toString(refillRate), Integer.toString(Math.min(cost, capacity)));
+            return waitMillis == null ? Duration.ZERO : Duration.ofMillis(waitMillis);
+        } catch (DataAccessException e) {
+            log.warn("Failed to check rate limit of user '{}', letting the request through", userId, e);
+            return Duration.ZERO;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.asalavei.cloudfilestorage.storage.search;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Immutable list of sorted strings stored with front coding.
+ * <p>
+ * Strings are grouped in blocks of {@value #BLOCK_SIZE}. The first string of a block is stored in full, every other
+ * one only as the length of the prefix it shares with its predecessor plus the remaining UTF-8 bytes. Sorted paths
+ * share long prefixes, so this takes a fraction of the memory of the strings themselves while keeping random access
+ * within one block decode.
+ */
+final class FrontCodedStrings {
+
+    private static final int BLOCK_SIZE = 16;
+
+    private final byte[] data;
+    private final int[] blockOffsets;
+    private final int size;
+
+    private FrontCodedStrings(byte[] data, int[] blockOffsets, int size) {
+        this.data = data;
+        this.blockOffsets = blockOffsets;
+        this.size = size;
+    }
+
+    /**
+     * @param sorted strings in {@link String#compareTo} order
+     */
+    static FrontCodedStrings of(List<String> sorted) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] blockOffsets = new int[(sorted.size() + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        byte[] previous = new byte[0];
+
+        for (int i = 0; i < sorted.size(); i++) {
+            byte[] current = sorted.get(i).getBytes(StandardCharsets.UTF_8);
+            int shared = 0;
+
+            if (i % BLOCK_SIZE == 0) {
+                blockOffsets[i / BLOCK_SIZE] = out.size();
+            } else {
+                shared = Arrays.mismatch(previous, current);
+                shared = shared < 0 ? current.length : shared;
+            }
+
+            writeVarInt(out, shared);
+            writeVarInt(out, current.length - shared);
+            out.write(current, shared, current.length - shared);
+            previous = current;
+        }
+
+        return new FrontCodedStrings(out.toByteArray(), blockOffsets, sorted.size());
+    }
+
+    int size() {
+        return size;
+    }
+
+    String get(int index) {
+        Objects.checkIndex(index, size);
+        Decoder decoder = new Decoder(blockOffsets[index / BLOCK_SIZE]);
+
+        for (int i = index - index % BLOCK_SIZE; i < index; i++) {
+            decoder.next();
+        }
+
+        return decoder.next();
+    }
+
+    /**
+     * @return the index of the first string that is not less than {@code key}, or {@link #size()} if there is none
+     */
+    int lowerBound(String key) {
+        int low = 0;
+        int high = blockOffsets.length - 1;
+
+        // last block whose first string is less than the key
+        int block = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+
+            if (new Decoder(blockOffsets[middle]).next().compareTo(key) < 0) {
+                block = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        if (block < 0) {
+            return 0;
+        }
+
+        int index = block * BLOCK_SIZE;
+        Decoder decoder = new Decoder(blockOffsets[block]);
+
+        while (index < size && index < (block + 1) * BLOCK_SIZE && decoder.next().compareTo(key) < 0) {
+            index++;
+        }
+
+        return index;
+    }
+
+    boolean contains(String value) {
+        int index = lowerBound(value);
+        return index < size && get(index).equals(value);
+    }
+
+    /**
+     * Decodes strings sequentially starting at {@code from} for as long as the action returns {@code true}.
+     */
+    void forEachFrom(int from, Predicate<String> action) {
+        if (from >= size) {
+            return;
+        }
+
+        int block = from / BLOCK_SIZE;
+        Decoder decoder = new Decoder(blockOffsets[block]);
+
+        for (int i = block * BLOCK_SIZE; i < size; i++) {
+            if (i % BLOCK_SIZE == 0) {
+                decoder = new Decoder(blockOffsets[i / BLOCK_SIZE]);
+            }
+
+            String value = decoder.next();
+
+            if (i >= from && !action.test(value)) {
+                return;
+            }
+        }
+    }
+
+    long memoryUsage() {
+        return data.length + 4L * blockOffsets.length;
+    }
+
+    static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private final class Decoder {
+
+        private int position;
+        private byte[] buffer = new byte[64];
+
+        private Decoder(int position) {
+            this.position = position;
+        }
+
+        private String next() {
+            int shared = readVarInt();
+            int suffixLength = readVarInt();
+            int length = shared + suffixLength;
+
+            if (length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(length, buffer.length * 2));
+            }
+
+            System.arraycopy(data, position, buffer, shared, suffixLength);
+            position += suffixLength;
+
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte current;
+
+            do {
+                current = data[position++];
+                value |= (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+
+            return value;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.asalavei.cloudfilestorage.storage.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static com.asalavei.cloudfilestorage.util.PathUtil.DELIMITER;
+
+/**
+ * Folder tree of a listing, built in a single pass over its paths.
+ * <p>
+ * Every folder on the way to a path becomes one node, so a folder is visited once however many objects it holds.
+ * For a sorted listing, the folders a path shares with its predecessor are taken from the branch built for the
+ * predecessor, and only the folders after the shared prefix are looked up or created.
+ */
+public final class PathTree {
+
+    private static final char DELIMITER_CHAR = DELIMITER.charAt(0);
+
+    private final Node root = new Node("", "");
+
+    private PathTree() {
+    }
+
+    /**
+     * @param paths the paths of files and folders, ideally sorted; folders end with the delimiter
+     */
+    public static PathTree build(Iterable<String> paths) {
+        PathTree tree = new PathTree();
+        List<Node> branch = new ArrayList<>();
+        branch.add(tree.root);
+        String previous = "";
+
+        for (String path : paths) {
+            int folderEnd = path.lastIndexOf(DELIMITER_CHAR) + 1;
+            int shared = getSharedPrefixLength(previous, path, folderEnd);
+
+            // keeps the folders of the predecessor whose path, including the trailing delimiter, is shared
+            while (branch.size() > 1 && branch.getLast().path.length() > shared) {
+                branch.removeLast();
+            }
+
+            Node node = branch.getLast();
+            int segmentStart = node.path.length();
+
+            for (int segmentEnd = path.indexOf(DELIMITER_CHAR, segmentStart); segmentEnd >= 0 && segmentEnd < folderEnd;
+                 segmentEnd = path.indexOf(DELIMITER_CHAR, segmentStart)) {
+                if (segmentEnd > segmentStart) {
+                    node = node.getOrAddChild(path, segmentStart, segmentEnd);
+                    branch.add(node);
+                }
+
+                segmentStart = segmentEnd + 1;
+            }
+
+            if (folderEnd < path.length()) {
+                node.addFile(path);
+            }
+
+            previous = path.substring(0, folderEnd);
+        }
+
+        return tree;
+    }
+
+    /**
+     * @param nameFilter the filter for the names of files and folders
+     * @return the paths of all files and folders whose name passes the filter, each folder exactly once
+     */
+    public List<String> collect(Predicate<String> nameFilter) {
+        List<String> paths = new ArrayList<>();
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+
+            if (node != root && nameFilter.test(node.name)) {
+                paths.add(node.path);
+            }
+
+            for (String file : node.files) {
+                if (nameFilter.test(file.substring(node.path.length()))) {
+                    paths.add(file);
+                }
+            }
+
+            node.children.values().forEach(pending::push);
+        }
+
+        return paths;
+    }
+
+    private static int getSharedPrefixLength(String previous, String path, int limit) {
+        int length = Math.min(previous.length(), limit);
+        int shared = 0;
+
+        while (shared < length && previous.charAt(shared) == path.charAt(shared)) {
+            shared++;
+        }
+
+        return shared;
+    }
+
+    private static final class Node {
+
+        private final String name;
+        private final String path;
+        private Map<String, Node> children = Map.of();
+        private List<String> files = List.of();
+
+        private Node(String name, String path) {
+            this.name = name;
+            this.path = path;
+        }
+
+        private Node getOrAddChild(String path, int nameStart, int nameEnd) {
+            String childName = path.substring(nameStart, nameEnd);
+            Node child = children.get(childName);
+
+            if (child == null) {
+                if (children.isEmpty()) {
+                    children = new HashMap<>();
+                }
+
+                child = new Node(childName, path.substring(0, nameEnd + 1));
+                children.put(childName, child);
+            }
+
+            return child;
+        }
+
+        private void addFile(String path) {
+            if (files.isEmpty()) {
+                files = new ArrayList<>();
+            }
+
+            files.add(path);
+        }
+    }
+}
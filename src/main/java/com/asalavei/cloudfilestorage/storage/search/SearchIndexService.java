@@ -0,0 +1,180 @@
+package com.asalavei.cloudfilestorage.storage.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Keeps in-memory search indexes of recently active users.
+ * <p>
+ * An index is built from a full listing on the first search of a user and then updated incrementally on every
+ * upload, rename and deletion handled by this node. An index whose build overlapped such an update may miss it, so
+ * it serves only the search that built it and is not kept. Indexes are evicted in least recently used order once
+ * their total size exceeds {@code storage.search-index.memory-budget}.
+ * <p>
+ * Indexes are local to the node and are not told about changes made through other nodes. They are rebuilt after
+ * {@code storage.search-index.max-age} to pick those up, so with several nodes a search may miss changes made
+ * through another node for up to that long.
+ */
+@Slf4j
+@Service
+public class SearchIndexService {
+
+    private final Map<Long, UserSearchIndex> indexes = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, PendingBuild> pendingBuilds = new HashMap<>();
+    private long memoryUsage;
+
+    @Value("${storage.search-index.enabled}")
+    private boolean enabled;
+
+    @Value("${storage.search-index.memory-budget}")
+    private DataSize memoryBudget;
+
+    @Value("${storage.search-index.max-age}")
+    private Duration maxAge;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param query      lowercased query matched against object names
+     * @param pathLoader supplies all file and folder paths of the user when the index has to be built
+     * @return paths of the matching files and folders
+     */
+    public List<String> search(Long userId, String query, Supplier<Collection<String>> pathLoader) {
+        return getIndex(userId, pathLoader).search(query);
+    }
+
+    public void onSaved(Long userId, String path) {
+        update(userId, index -> index.add(path));
+    }
+
+    public void onDeleted(Long userId, String path) {
+        update(userId, index -> index.remove(path));
+    }
+
+    public void onRenamed(Long userId, String path, String newPath) {
+        update(userId, index -> index.rename(path, newPath));
+    }
+
+    private UserSearchIndex getIndex(Long userId, Supplier<Collection<String>> pathLoader) {
+        long updatesBeforeBuild;
+
+        synchronized (indexes) {
+            UserSearchIndex index = indexes.get(userId);
+
+            if (index != null && !index.isOlderThan(maxAge.toMillis())) {
+                return index;
+            }
+
+            PendingBuild pendingBuild = pendingBuilds.computeIfAbsent(userId, id -> new PendingBuild());
+            pendingBuild.builds++;
+            updatesBeforeBuild = pendingBuild.updates;
+        }
+
+        UserSearchIndex index;
+
+        try {
+            index = UserSearchIndex.build(pathLoader.get());
+        } catch (RuntimeException e) {
+            synchronized (indexes) {
+                finishBuild(userId);
+            }
+            throw e;
+        }
+
+        synchronized (indexes) {
+            if (finishBuild(userId) != updatesBeforeBuild) {
+                log.debug("Not keeping search index of user '{}', which changed while it was built", userId);
+                return index;
+            }
+
+            UserSearchIndex previous = indexes.put(userId, index);
+
+            if (previous != null) {
+                memoryUsage -= previous.accountedMemoryUsage;
+            }
+
+            account(index);
+            evictOverBudget(userId);
+        }
+
+        return index;
+    }
+
+    /**
+     * @return the number of updates of the user since their first pending build started
+     */
+    private long finishBuild(Long userId) {
+        PendingBuild pendingBuild = pendingBuilds.get(userId);
+
+        if (--pendingBuild.builds == 0) {
+            pendingBuilds.remove(userId);
+        }
+
+        return pendingBuild.updates;
+    }
+
+    private void update(Long userId, Consumer<UserSearchIndex> update) {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (indexes) {
+            PendingBuild pendingBuild = pendingBuilds.get(userId);
+
+            if (pendingBuild != null) {
+                pendingBuild.updates++;
+            }
+
+            UserSearchIndex index = indexes.get(userId);
+
+            if (index != null) {
+                update.accept(index);
+                memoryUsage -= index.accountedMemoryUsage;
+                account(index);
+                evictOverBudget(userId);
+            }
+        }
+    }
+
+    private void account(UserSearchIndex index) {
+        index.accountedMemoryUsage = index.memoryUsage();
+        memoryUsage += index.accountedMemoryUsage;
+    }
+
+    private void evictOverBudget(Long activeUserId) {
+        Iterator<Map.Entry<Long, UserSearchIndex>> iterator = indexes.entrySet().iterator();
+
+        while (memoryUsage > memoryBudget.toBytes() && iterator.hasNext()) {
+            Map.Entry<Long, UserSearchIndex> eldest = iterator.next();
+
+            if (!eldest.getKey().equals(activeUserId)) {
+                log.debug("Evicting search index of user '{}' to stay within the memory budget", eldest.getKey());
+                memoryUsage -= eldest.getValue().accountedMemoryUsage;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Builds of the index of a user in progress, and the updates of the user since the first of them started.
+     */
+    private static class PendingBuild {
+
+        private int builds;
+        private long updates;
+    }
+}
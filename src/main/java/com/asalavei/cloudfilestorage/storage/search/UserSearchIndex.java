@@ -0,0 +1,306 @@
+package com.asalavei.cloudfilestorage.storage.search;
+
+import com.asalavei.cloudfilestorage.util.PathUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.asalavei.cloudfilestorage.util.PathUtil.DELIMITER;
+
+/**
+ * Search index over the paths of one user's files and folders.
+ * <p>
+ * The bulk of the paths lives in an immutable base: the sorted paths are front coded, and every trigram of a
+ * lowercased object name maps to a delta-encoded posting list of path ordinals. Uploads, renames and deletions are
+ * applied to a small delta of added and removed paths, which is merged into a rebuilt base once it grows too large.
+ */
+final class UserSearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+    private static final int MIN_COMPACTION_THRESHOLD = 1024;
+    private static final long STRING_OVERHEAD = 56;
+    private static final long POSTING_OVERHEAD = 64;
+
+    private final long createdAt = System.currentTimeMillis();
+
+    private FrontCodedStrings paths;
+    private Map<Long, byte[]> postings;
+    private long postingsMemoryUsage;
+
+    private final TreeSet<String> added = new TreeSet<>();
+    private final Set<String> removed = new HashSet<>();
+
+    long accountedMemoryUsage;
+
+    private UserSearchIndex(List<String> sortedPaths) {
+        rebuild(sortedPaths);
+    }
+
+    static UserSearchIndex build(Collection<String> paths) {
+        return new UserSearchIndex(new ArrayList<>(new TreeSet<>(paths)));
+    }
+
+    boolean isOlderThan(long maxAgeMillis) {
+        return System.currentTimeMillis() - createdAt > maxAgeMillis;
+    }
+
+    /**
+     * @param query lowercased query matched against object names
+     * @return paths of the matching files and folders
+     */
+    synchronized List<String> search(String query) {
+        List<String> found = new ArrayList<>();
+
+        if (query.length() < GRAM_LENGTH) {
+            paths.forEachFrom(0, path -> {
+                addIfMatches(found, path, query);
+                return true;
+            });
+        } else {
+            byte[] candidates = getSmallestPosting(query);
+
+            if (candidates != null) {
+                forEachOrdinal(candidates, ordinal -> addIfMatches(found, paths.get(ordinal), query));
+            }
+        }
+
+        for (String path : added) {
+            if (matches(path, query)) {
+                found.add(path);
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Adds the path together with all of its parent folders.
+     */
+    synchronized void add(String path) {
+        int end = path.indexOf(DELIMITER, 1);
+
+        while (end >= 0) {
+            addPath(path.substring(0, end + 1));
+            end = path.indexOf(DELIMITER, end + 1);
+        }
+
+        if (!PathUtil.isFolder(path)) {
+            addPath(path);
+        }
+
+        compactIfNeeded();
+    }
+
+    /**
+     * Removes the path, and all paths under it if it is a folder.
+     */
+    synchronized void remove(String path) {
+        removeAll(path);
+        compactIfNeeded();
+    }
+
+    synchronized void rename(String path, String newPath) {
+        for (String removedPath : removeAll(path)) {
+            String renamedPath = newPath + removedPath.substring(path.length());
+            removed.remove(renamedPath);
+
+            if (!paths.contains(renamedPath)) {
+                added.add(renamedPath);
+            }
+        }
+
+        compactIfNeeded();
+    }
+
+    synchronized long memoryUsage() {
+        long deltaMemoryUsage = 0;
+
+        for (String path : added) {
+            deltaMemoryUsage += STRING_OVERHEAD + 2L * path.length();
+        }
+        for (String path : removed) {
+            deltaMemoryUsage += STRING_OVERHEAD + 2L * path.length();
+        }
+
+        return paths.memoryUsage() + postingsMemoryUsage + deltaMemoryUsage;
+    }
+
+    private void addPath(String path) {
+        removed.remove(path);
+
+        if (!paths.contains(path)) {
+            added.add(path);
+        }
+    }
+
+    private List<String> removeAll(String path) {
+        List<String> removedPaths = new ArrayList<>();
+        boolean isFolder = PathUtil.isFolder(path);
+
+        paths.forEachFrom(paths.lowerBound(path), current -> {
+            boolean matches = isFolder ? current.startsWith(path) : current.equals(path);
+
+            if (matches && removed.add(current)) {
+                removedPaths.add(current);
+            }
+
+            return matches;
+        });
+
+        Iterator<String> iterator = added.tailSet(path).iterator();
+
+        while (iterator.hasNext()) {
+            String current = iterator.next();
+
+            if (isFolder ? !current.startsWith(path) : !current.equals(path)) {
+                break;
+            }
+
+            removedPaths.add(current);
+            iterator.remove();
+        }
+
+        return removedPaths;
+    }
+
+    private void compactIfNeeded() {
+        if (added.size() + removed.size() <= Math.max(MIN_COMPACTION_THRESHOLD, paths.size() / 8)) {
+            return;
+        }
+
+        List<String> merged = new ArrayList<>(paths.size() + added.size());
+        Iterator<String> addedIterator = added.iterator();
+        String[] nextAdded = {addedIterator.hasNext() ? addedIterator.next() : null};
+
+        paths.forEachFrom(0, path -> {
+            while (nextAdded[0] != null && nextAdded[0].compareTo(path) < 0) {
+                merged.add(nextAdded[0]);
+                nextAdded[0] = addedIterator.hasNext() ? addedIterator.next() : null;
+            }
+
+            if (!removed.contains(path)) {
+                merged.add(path);
+            }
+
+            return true;
+        });
+
+        while (nextAdded[0] != null) {
+            merged.add(nextAdded[0]);
+            nextAdded[0] = addedIterator.hasNext() ? addedIterator.next() : null;
+        }
+
+        added.clear();
+        removed.clear();
+        rebuild(merged);
+    }
+
+    private void rebuild(List<String> sortedPaths) {
+        Map<Long, PostingBuilder> builders = new HashMap<>();
+
+        for (int ordinal = 0; ordinal < sortedPaths.size(); ordinal++) {
+            String name = getName(sortedPaths.get(ordinal));
+
+            for (int i = 0; i + GRAM_LENGTH <= name.length(); i++) {
+                builders.computeIfAbsent(gram(name, i), key -> new PostingBuilder()).add(ordinal);
+            }
+        }
+
+        Map<Long, byte[]> builtPostings = HashMap.newHashMap(builders.size());
+        long builtPostingsMemoryUsage = 0;
+
+        for (Map.Entry<Long, PostingBuilder> entry : builders.entrySet()) {
+            byte[] posting = entry.getValue().bytes.toByteArray();
+            builtPostings.put(entry.getKey(), posting);
+            builtPostingsMemoryUsage += POSTING_OVERHEAD + posting.length;
+        }
+
+        paths = FrontCodedStrings.of(sortedPaths);
+        postings = builtPostings;
+        postingsMemoryUsage = builtPostingsMemoryUsage;
+    }
+
+    private byte[] getSmallestPosting(String query) {
+        byte[] smallest = null;
+
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+            byte[] posting = postings.get(gram(query, i));
+
+            if (posting == null) {
+                return null;
+            }
+
+            if (smallest == null || posting.length < smallest.length) {
+                smallest = posting;
+            }
+        }
+
+        return smallest;
+    }
+
+    private void addIfMatches(List<String> found, String path, String query) {
+        if (!removed.contains(path) && matches(path, query)) {
+            found.add(path);
+        }
+    }
+
+    private static boolean matches(String path, String query) {
+        return getName(path).contains(query);
+    }
+
+    private static String getName(String path) {
+        return PathUtil.getObjectName(path).toLowerCase();
+    }
+
+    private static long gram(String value, int start) {
+        return ((long) value.charAt(start) << 32) | ((long) value.charAt(start + 1) << 16) | value.charAt(start + 2);
+    }
+
+    private static void forEachOrdinal(byte[] posting, OrdinalConsumer consumer) {
+        int position = 0;
+        int ordinal = 0;
+
+        while (position < posting.length) {
+            int delta = 0;
+            int shift = 0;
+            byte current;
+
+            do {
+                current = posting[position++];
+                delta |= (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+
+            ordinal += delta;
+            consumer.accept(ordinal);
+        }
+    }
+
+    @FunctionalInterface
+    private interface OrdinalConsumer {
+        void accept(int ordinal);
+    }
+
+    private static final class PostingBuilder {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int last;
+
+        private void add(int ordinal) {
+            if (bytes.size() > 0 && ordinal == last) {
+                return;
+            }
+
+            FrontCodedStrings.writeVarInt(bytes, ordinal - last);
+            last = ordinal;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.asalavei.cloudfilestorage.storage.thumbnail;
+
+import com.asalavei.cloudfilestorage.storage.exception.ObjectNotFoundException;
+import com.asalavei.cloudfilestorage.storage.minio.MinioOperationException;
+import com.asalavei.cloudfilestorage.storage.minio.MinioRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.asalavei.cloudfilestorage.util.PathUtil.DELIMITER;
+import static com.asalavei.cloudfilestorage.util.PathUtil.getFileName;
+import static com.asalavei.cloudfilestorage.util.PathUtil.isFolder;
+
+/**
+ * Generates downscaled JPEG thumbnails of images in the background and stores them as derived objects.
+ * <p>
+ * A thumbnail is stored under the path of its image and the time the image was last written, its version, so
+ * the content under one name never changes and browsers may cache it for good. Thumbnails are generated on
+ * {@code storage.thumbnail.worker-threads} platform threads, since decoding is CPU-bound, with a bounded queue.
+ * A request that does not fit into the queue is dropped, and the thumbnail is requested again the next time it
+ * is found missing.
+ */
+@Slf4j
+@Service
+public class ThumbnailService {
+
+    public static final MediaType CONTENT_TYPE = MediaType.IMAGE_JPEG;
+
+    private static final String THUMBNAIL_PREFIX = "thumbnails/";
+    private static final String FORMAT = "jpg";
+
+    private final MinioRepository minioRepository;
+    private final String bucketName;
+    private final boolean enabled;
+    private final int size;
+    private final long maxSourceSize;
+    private final Set<String> supportedExtensions;
+    private final Set<String> pendingPaths = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor;
+
+    public ThumbnailService(MinioRepository minioRepository,
+                            @Value("${minio.bucket.name}") String bucketName,
+                            @Value("${storage.thumbnail.enabled}") boolean enabled,
+                            @Value("${storage.thumbnail.size}") int size,
+                            @Value("${storage.thumbnail.max-source-size}") DataSize maxSourceSize,
+                            @Value("${storage.thumbnail.worker-threads}") int workerThreads,
+                            @Value("${storage.thumbnail.queue-capacity}") int queueCapacity) {
+        this.minioRepository = minioRepository;
+        this.bucketName = bucketName;
+        this.enabled = enabled;
+        this.size = size;
+        this.maxSourceSize = maxSourceSize.toBytes();
+        this.supportedExtensions = Set.of(ImageIO.getReaderFileSuffixes());
+        this.executor = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), Thread.ofPlatform().name("thumbnail-", 0).daemon().factory());
+    }
+
+    /**
+     * @return whether the file can have a thumbnail, judged by its extension
+     */
+    public boolean supports(String path) {
+        if (!enabled || isFolder(path)) {
+            return false;
+        }
+
+        String fileName = getFileName(path);
+        int extensionStart = fileName.lastIndexOf('.') + 1;
+
+        return extensionStart > 0 && supportedExtensions.contains(fileName.substring(extensionStart).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @param lastModified the time the file was last written, as listed
+     * @return the version of the thumbnail of the file, or {@code null} if it has none
+     */
+    public Long getVersion(String path, Instant lastModified) {
+        return lastModified != null && supports(path) ? lastModified.toEpochMilli() : null;
+    }
+
+    /**
+     * Queues generation of the thumbnail of the file, unless it is already queued or the queue is full.
+     */
+    public void generateAsync(String path) {
+        if (!supports(path) || !pendingPaths.add(path)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(path);
+                } finally {
+                    pendingPaths.remove(path);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingPaths.remove(path);
+            log.debug("Thumbnail queue is full, skipping thumbnail of '{}'", path);
+        }
+    }
+
+    /**
+     * @return the thumbnail of the given version, or empty if it has not been generated yet, in which case
+     * its generation is queued
+     */
+    public Optional<InputStream> find(String path, long version) {
+        try {
+            return Optional.of(minioRepository.getDerived(bucketName, getName(path, version)));
+        } catch (ObjectNotFoundException e) {
+            generateAsync(path);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Deletes the thumbnails of the file, or of all files under the folder.
+     */
+    public void delete(String path) {
+        try {
+            minioRepository.deleteAllDerived(bucketName, isFolder(path) ? THUMBNAIL_PREFIX + path : getPrefix(path));
+        } catch (MinioOperationException e) {
+            log.warn("Failed to delete thumbnails of '{}' from bucket '{}'", path, bucketName, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void generate(String path) {
+        try {
+            if (minioRepository.stat(bucketName, path).size() > maxSourceSize) {
+                log.debug("Image '{}' is too large to generate a thumbnail of", path);
+                return;
+            }
+
+            long version = minioRepository.getLastModified(bucketName, path).toEpochMilli();
+            byte[] thumbnail;
+
+            try (InputStream inputStream = minioRepository.get(bucketName, path)) {
+                thumbnail = createThumbnail(inputStream);
+            }
+
+            if (thumbnail == null) {
+                log.debug("File '{}' is not a readable image, no thumbnail generated", path);
+                return;
+            }
+
+            // thumbnails of previous versions are no longer listed
+            minioRepository.deleteAllDerived(bucketName, getPrefix(path));
+            minioRepository.saveDerived(bucketName, getName(path, version), thumbnail, CONTENT_TYPE.toString());
+        } catch (ObjectNotFoundException e) {
+            log.debug("Image '{}' was deleted before its thumbnail was generated", path);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to generate thumbnail of '{}' in bucket '{}'", path, bucketName, e);
+        }
+    }
+
+    /**
+     * @return the encoded thumbnail, or {@code null} if the content is not an image in a readable format
+     */
+    private byte[] createThumbnail(InputStream inputStream) throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+            Iterator<ImageReader> readers = imageInputStream == null ? null : ImageIO.getImageReaders(imageInputStream);
+
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+
+            try {
+                reader.setInput(imageInputStream, true, true);
+                int subsampling = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / (2 * size));
+
+                // decodes only every n-th pixel, so a large image is never held in memory at full resolution
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ImageIO.write(scale(reader.read(0, param)), FORMAT, bytes);
+
+                return bytes.toByteArray();
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales the image to fit into {@code size} pixels, halving it in steps so that bilinear interpolation does
+     * not skip pixels.
+     */
+    private BufferedImage scale(BufferedImage image) {
+        double ratio = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage scaled = image;
+
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            scaled = draw(scaled, width, height);
+        } while (width != targetWidth || height != targetHeight);
+
+        return scaled;
+    }
+
+    private static BufferedImage draw(BufferedImage image, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+
+        try {
+            // JPEG has no transparency, so transparent pixels are drawn on white
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        return target;
+    }
+
+    private static String getPrefix(String path) {
+        return THUMBNAIL_PREFIX + path + DELIMITER;
+    }
+
+    private static String getName(String path, long version) {
+        return getPrefix(path) + version + "." + FORMAT;
+    }
+}
@@ -0,0 +1,70 @@
+package com.asalavei.cloudfilestorage.storage.upload;
+
+import com.asalavei.cloudfilestorage.storage.exception.ObjectNotFoundException;
+import com.asalavei.cloudfilestorage.storage.minio.MinioOperationException;
+import com.asalavei.cloudfilestorage.storage.minio.MinioRepository;
+import com.asalavei.cloudfilestorage.storage.minio.MinioUploadDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Periodically aborts the S3 multipart uploads whose sessions expired, so that their parts do not stay in MinIO.
+ * <p>
+ * Only uploads initiated more than {@code storage.upload.session-ttl} ago are considered, since a younger upload
+ * may still be waiting for its session to be saved.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExpiredUploadSweeper {
+
+    private final MinioRepository minioRepository;
+    private final UploadSessionRepository uploadSessionRepository;
+
+    @Value("${minio.bucket.name}")
+    private String bucketName;
+
+    @Value("${storage.upload.session-ttl}")
+    private Duration sessionTtl;
+
+    @Scheduled(fixedDelayString = "${storage.upload.sweep-interval}",
+            initialDelayString = "${storage.upload.sweep-interval}")
+    public void abortExpiredUploads() {
+        long aborted = 0;
+
+        try {
+            uploadSessionRepository.removeExpired();
+
+            for (MinioUploadDto upload : minioRepository.listUploads(bucketName, Instant.now().minus(sessionTtl))) {
+                if (!uploadSessionRepository.isActive(upload.uploadId()) && abort(upload)) {
+                    aborted++;
+                }
+            }
+        } catch (MinioOperationException | DataAccessException e) {
+            log.error("Failed to sweep expired uploads in bucket '{}'", bucketName, e);
+        }
+
+        log.info("Aborted {} expired uploads in bucket '{}'", aborted, bucketName);
+    }
+
+    private boolean abort(MinioUploadDto upload) {
+        try {
+            minioRepository.abortUpload(bucketName, upload.path(), upload.uploadId());
+            return true;
+        } catch (ObjectNotFoundException e) {
+            // aborted or completed concurrently
+            return false;
+        } catch (MinioOperationException e) {
+            log.warn("Failed to abort expired upload '{}' of path '{}' initiated at {}",
+                    upload.uploadId(), upload.path(), upload.initiated(), e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.asalavei.cloudfilestorage.storage.upload;
+
+import com.asalavei.cloudfilestorage.security.UserPrincipal;
+import com.asalavei.cloudfilestorage.storage.FileStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * Resumable uploads for files above the multipart request limit. The client initiates an upload, sends the parts
+ * as raw request bodies in any order and in parallel, and completes or aborts it. After a network drop the client
+ * fetches the upload to learn which parts are already stored.
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/storage/uploads")
+public class MultipartUploadController {
+
+    private final FileStorageService fileStorageService;
+
+    @PostMapping
+    public UploadSessionResponseDto initiate(@Valid @RequestBody UploadInitiateRequestDto request,
+                                             @AuthenticationPrincipal UserPrincipal userPrincipal) {
+        return fileStorageService.initiateUpload(userPrincipal.getId(), request.path(), request.fileName(),
+                request.size(), request.contentType());
+    }
+
+    @GetMapping("/{uploadId}")
+    public UploadSessionResponseDto get(@PathVariable String uploadId, @AuthenticationPrincipal UserPrincipal userPrincipal) {
+        return fileStorageService.getUpload(userPrincipal.getId(), uploadId);
+    }
+
+    @PutMapping("/{uploadId}/parts/{partNumber}")
+    public ResponseEntity<Void> uploadPart(@PathVariable String uploadId, @PathVariable int partNumber,
+                                           @AuthenticationPrincipal UserPrincipal userPrincipal,
+                                           HttpServletRequest request) throws IOException {
+        fileStorageService.uploadPart(userPrincipal.getId(), uploadId, partNumber, request.getInputStream(),
+                request.getContentLengthLong());
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<Void> complete(@PathVariable String uploadId, @AuthenticationPrincipal UserPrincipal userPrincipal) {
+        fileStorageService.completeUpload(userPrincipal.getId(), uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<Void> abort(@PathVariable String uploadId, @AuthenticationPrincipal UserPrincipal userPrincipal) {
+        fileStorageService.abortUpload(userPrincipal.getId(), uploadId);
+        return ResponseEntity.noContent().build();
+    }
+}
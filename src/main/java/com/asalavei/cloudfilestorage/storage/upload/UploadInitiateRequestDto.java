@@ -0,0 +1,25 @@
+package com.asalavei.cloudfilestorage.storage.upload;
+
+import com.asalavei.cloudfilestorage.validation.constraint.ValidObjectPath;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+
+public record UploadInitiateRequestDto(
+        @NotBlank(message = "Path cannot be blank")
+        @ValidObjectPath
+        String path,
+
+        @NotBlank(message = "File name cannot be blank")
+        @Size(max = 1024, message = "File name must be less than 1024 characters")
+        String fileName,
+
+        @PositiveOrZero(message = "Size cannot be negative")
+        // 10,000 parts of at most 64 MB
+        @Max(value = 10_000L * 64 * 1024 * 1024, message = "Size cannot exceed 625 GB")
+        long size,
+
+        String contentType
+) {
+}
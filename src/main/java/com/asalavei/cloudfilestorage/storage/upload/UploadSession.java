@@ -0,0 +1,22 @@
+package com.asalavei.cloudfilestorage.storage.upload;
+
+import java.util.Map;
+
+/**
+ * State of a resumable upload, kept in Redis so that any node can accept the next part.
+ *
+ * @param path     path of the uploaded file relative to the user root
+ * @param uploadId id of the underlying S3 multipart upload
+ * @param parts    ETags of the parts uploaded so far by part number
+ */
+public record UploadSession(String id, Long userId, String path, String uploadId, String contentType,
+                            long size, long partSize, Map<Integer, String> parts) {
+
+    public int getPartCount() {
+        return (int) Math.max(1, (size + partSize - 1) / partSize);
+    }
+
+    public long getPartLength(int partNumber) {
+        return partNumber < getPartCount() ? partSize : size - partSize * (getPartCount() - 1);
+    }
+}
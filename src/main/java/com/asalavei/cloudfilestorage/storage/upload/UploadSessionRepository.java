@@ -0,0 +1,119 @@
+package com.asalavei.cloudfilestorage.storage.upload;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Keeps upload sessions in Redis until they expire after {@code storage.upload.session-ttl} without progress.
+ * <p>
+ * The S3 uploads of live sessions are also kept in a sorted set scored by their expiry time, so that
+ * {@link ExpiredUploadSweeper} can tell the uploads of expired sessions apart.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UploadSessionRepository {
+
+    private static final String KEY_PREFIX = "storage:upload:";
+    private static final String ACTIVE_UPLOADS_KEY = "storage:uploads:active";
+    private static final String PART_FIELD_PREFIX = "part:";
+
+    private static final String USER_ID_FIELD = "userId";
+    private static final String PATH_FIELD = "path";
+    private static final String UPLOAD_ID_FIELD = "uploadId";
+    private static final String CONTENT_TYPE_FIELD = "contentType";
+    private static final String SIZE_FIELD = "size";
+    private static final String PART_SIZE_FIELD = "partSize";
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${storage.upload.session-ttl}")
+    private Duration sessionTtl;
+
+    public void save(UploadSession session) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(USER_ID_FIELD, session.userId().toString());
+        fields.put(PATH_FIELD, session.path());
+        fields.put(UPLOAD_ID_FIELD, session.uploadId());
+        fields.put(SIZE_FIELD, Long.toString(session.size()));
+        fields.put(PART_SIZE_FIELD, Long.toString(session.partSize()));
+
+        if (session.contentType() != null) {
+            fields.put(CONTENT_TYPE_FIELD, session.contentType());
+        }
+
+        String key = getKey(session.id());
+        redisTemplate.opsForHash().putAll(key, fields);
+        redisTemplate.expire(key, sessionTtl);
+        markActive(session.uploadId());
+    }
+
+    public Optional<UploadSession> findById(String id) {
+        Map<Object, Object> fields = redisTemplate.opsForHash().entries(getKey(id));
+
+        if (fields.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map<Integer, String> parts = new TreeMap<>();
+
+        fields.forEach((field, value) -> {
+            if (field.toString().startsWith(PART_FIELD_PREFIX)) {
+                parts.put(Integer.parseInt(field.toString().substring(PART_FIELD_PREFIX.length())), value.toString());
+            }
+        });
+
+        return Optional.of(new UploadSession(
+                id,
+                Long.parseLong(fields.get(USER_ID_FIELD).toString()),
+                fields.get(PATH_FIELD).toString(),
+                fields.get(UPLOAD_ID_FIELD).toString(),
+                (String) fields.get(CONTENT_TYPE_FIELD),
+                Long.parseLong(fields.get(SIZE_FIELD).toString()),
+                Long.parseLong(fields.get(PART_SIZE_FIELD).toString()),
+                parts
+        ));
+    }
+
+    /**
+     * Records an uploaded part and extends the session lifetime, so an upload expires only after it stalls.
+     */
+    public void savePart(UploadSession session, int partNumber, String etag) {
+        String key = getKey(session.id());
+        redisTemplate.opsForHash().put(key, PART_FIELD_PREFIX + partNumber, etag);
+        redisTemplate.expire(key, sessionTtl);
+        markActive(session.uploadId());
+    }
+
+    public void delete(UploadSession session) {
+        redisTemplate.delete(getKey(session.id()));
+        redisTemplate.opsForZSet().remove(ACTIVE_UPLOADS_KEY, session.uploadId());
+    }
+
+    /**
+     * @return whether the S3 upload belongs to a session that has not expired
+     */
+    public boolean isActive(String uploadId) {
+        Double expiresAt = redisTemplate.opsForZSet().score(ACTIVE_UPLOADS_KEY, uploadId);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    public void removeExpired() {
+        redisTemplate.opsForZSet().removeRangeByScore(ACTIVE_UPLOADS_KEY, 0, System.currentTimeMillis());
+    }
+
+    private void markActive(String uploadId) {
+        redisTemplate.opsForZSet().add(ACTIVE_UPLOADS_KEY, uploadId, System.currentTimeMillis() + sessionTtl.toMillis());
+    }
+
+    private String getKey(String id) {
+        return KEY_PREFIX + id;
+    }
+}
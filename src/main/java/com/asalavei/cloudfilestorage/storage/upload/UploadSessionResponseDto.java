@@ -0,0 +1,14 @@
+package com.asalavei.cloudfilestorage.storage.upload;
+
+import java.util.List;
+
+/**
+ * @param uploadedParts numbers of the parts that are already stored and can be skipped when resuming
+ */
+public record UploadSessionResponseDto(String id, long partSize, int partCount, List<Integer> uploadedParts) {
+
+    public static UploadSessionResponseDto of(UploadSession session) {
+        return new UploadSessionResponseDto(session.id(), session.partSize(), session.getPartCount(),
+                List.copyOf(session.parts().keySet()));
+    }
+}
@@ -0,0 +1,11 @@
+package com.asalavei.cloudfilestorage.storage.usage;
+
+/**
+ * @param quotaBytes the maximum number of bytes the user may store
+ */
+public record StorageUsageDto(long bytes, long objects, long quotaBytes) {
+
+    public long getAvailableBytes() {
+        return Math.max(quotaBytes - bytes, 0);
+    }
+}
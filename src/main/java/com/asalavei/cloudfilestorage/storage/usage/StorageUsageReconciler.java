@@ -0,0 +1,57 @@
+package com.asalavei.cloudfilestorage.storage.usage;
+
+import com.asalavei.cloudfilestorage.auth.user.UserRepository;
+import com.asalavei.cloudfilestorage.storage.FileStorageService;
+import com.asalavei.cloudfilestorage.storage.exception.FileStorageException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Periodically measures the storage of every user and corrects the counters kept by {@link StorageUsageService}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StorageUsageReconciler {
+
+    private static final int USER_BATCH_SIZE = 100;
+
+    private final UserRepository userRepository;
+    private final FileStorageService fileStorageService;
+
+    @Scheduled(fixedDelayString = "${storage.usage.reconciliation-interval}",
+            initialDelayString = "${storage.usage.reconciliation-interval}")
+    public void reconcileAll() {
+        long reconciled = 0;
+        long skipped = 0;
+        long failed = 0;
+        long afterId = 0;
+        List<Long> userIds;
+
+        do {
+            userIds = userRepository.findIdsAfter(afterId, Limit.of(USER_BATCH_SIZE));
+
+            for (Long userId : userIds) {
+                try {
+                    if (fileStorageService.reconcileUsage(userId)) {
+                        reconciled++;
+                    } else {
+                        skipped++;
+                    }
+                } catch (FileStorageException e) {
+                    failed++;
+                }
+            }
+
+            afterId = userIds.isEmpty() ? afterId : userIds.getLast();
+        } while (userIds.size() == USER_BATCH_SIZE);
+
+        log.info("Reconciled storage usage of {} users, skipped {} that changed during measurement, {} failed",
+                reconciled, skipped, failed);
+    }
+}
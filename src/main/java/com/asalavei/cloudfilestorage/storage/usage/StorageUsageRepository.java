@@ -0,0 +1,35 @@
+package com.asalavei.cloudfilestorage.storage.usage;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface StorageUsageRepository extends JpaRepository<StorageUsage, Long> {
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO storage_usage (user_id, bytes, objects)
+            VALUES (:userId, :bytes, :objects)
+            ON CONFLICT (user_id) DO UPDATE
+            SET bytes = storage_usage.bytes + EXCLUDED.bytes, objects = storage_usage.objects + EXCLUDED.objects
+            """, nativeQuery = true)
+    void add(@Param("userId") Long userId, @Param("bytes") long bytes, @Param("objects") long objects);
+
+    /**
+     * Replaces the usage only if it still has the expected values.
+     *
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE storage_usage
+            SET bytes = :bytes, objects = :objects
+            WHERE user_id = :userId AND bytes = :expectedBytes AND objects = :expectedObjects
+            """, nativeQuery = true)
+    int compareAndSet(@Param("userId") Long userId, @Param("expectedBytes") long expectedBytes,
+                      @Param("expectedObjects") long expectedObjects, @Param("bytes") long bytes,
+                      @Param("objects") long objects);
+}
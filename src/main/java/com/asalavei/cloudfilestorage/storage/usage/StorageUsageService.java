@@ -0,0 +1,91 @@
+package com.asalavei.cloudfilestorage.storage.usage;
+
+import com.asalavei.cloudfilestorage.storage.exception.QuotaExceededException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Keeps the number of objects and bytes each user stores. Counters are adjusted by atomic deltas on every write,
+ * so reading the usage, and checking the quota, is a single primary key lookup. Drift left by failed operations
+ * is corrected by {@link StorageUsageReconciler}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StorageUsageService {
+
+    private final StorageUsageRepository storageUsageRepository;
+
+    @Value("${storage.usage.quota}")
+    private DataSize quota;
+
+    @Transactional(readOnly = true)
+    public StorageUsageDto getUsage(Long userId) {
+        return storageUsageRepository.findById(userId)
+                .map(usage -> new StorageUsageDto(usage.getBytes(), usage.getObjects(), quota.toBytes()))
+                .orElseGet(() -> new StorageUsageDto(0, 0, quota.toBytes()));
+    }
+
+    /**
+     * Checks that {@code bytes} more fit into the quota of the user. Resumable uploads are checked when they start
+     * and again before they complete. Uploads that complete concurrently are checked independently, so together
+     * they may exceed the quota by the size of those uploads.
+     */
+    public void checkQuota(Long userId, long bytes) {
+        if (bytes > getUsage(userId).getAvailableBytes()) {
+            throw new QuotaExceededException("Not enough storage space. Your storage quota is " + quota.toMegabytes() + " MB");
+        }
+    }
+
+    public void recordAdded(Long userId, long objects, long bytes) {
+        add(userId, objects, bytes);
+    }
+
+    public void recordRemoved(Long userId, long objects, long bytes) {
+        add(userId, -objects, -bytes);
+    }
+
+    /**
+     * Replaces the counters with measured values. The measurement is discarded if the counters changed since
+     * {@code before} was read, since it may not include that change.
+     *
+     * @return whether the counters were replaced
+     */
+    @Transactional
+    public boolean reconcile(Long userId, StorageUsageDto before, long objects, long bytes) {
+        if (before.bytes() == bytes && before.objects() == objects) {
+            return true;
+        }
+
+        if (!storageUsageRepository.existsById(userId)) {
+            storageUsageRepository.add(userId, bytes, objects);
+            return true;
+        }
+
+        boolean replaced = storageUsageRepository.compareAndSet(userId, before.bytes(), before.objects(), bytes, objects) > 0;
+
+        if (replaced) {
+            log.info("Reconciled storage usage of user '{}' from {} objects, {} bytes to {} objects, {} bytes",
+                    userId, before.objects(), before.bytes(), objects, bytes);
+        }
+
+        return replaced;
+    }
+
+    /**
+     * The objects are already stored or deleted at this point, so a failed update only leaves the counters
+     * behind until the next reconciliation.
+     */
+    private void add(Long userId, long objects, long bytes) {
+        try {
+            storageUsageRepository.add(userId, bytes, objects);
+        } catch (DataAccessException e) {
+            log.warn("Failed to update storage usage of user '{}' by {} objects, {} bytes", userId, objects, bytes, e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.asalavei.cloudfilestorage.storage.zip;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Stores already compressed formats, such as photos, video, audio and archives, without compressing them again,
+ * and deflates everything else at {@code storage.zip.deflate-level}. The content type is checked first and the
+ * file extension is the fallback for objects stored without a specific type.
+ */
+@Component
+public class ContentTypeZipCompressionPolicy implements ZipCompressionPolicy {
+
+    private static final Set<String> COMPRESSED_CONTENT_TYPE_PREFIXES = Set.of("video/", "audio/");
+
+    private static final Set<String> UNCOMPRESSED_AUDIO_CONTENT_TYPES = Set.of(
+            "audio/wav", "audio/x-wav", "audio/wave", "audio/aiff", "audio/x-aiff");
+
+    private static final Set<String> COMPRESSED_CONTENT_TYPES = Set.of(
+            "image/jpeg", "image/png", "image/gif", "image/webp", "image/avif", "image/heic", "image/heif",
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-bzip2", "application/x-xz",
+            "application/zstd", "application/x-7z-compressed", "application/x-rar-compressed", "application/vnd.rar",
+            "application/java-archive", "application/epub+zip", "application/pdf",
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+            "application/vnd.openxmlformats-officedocument.presentationml.presentation");
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "jpg", "jpeg", "png", "gif", "webp", "avif", "heic", "heif",
+            "mp4", "m4v", "mov", "mkv", "webm", "avi", "wmv",
+            "mp3", "m4a", "aac", "ogg", "oga", "opus", "flac", "wma",
+            "zip", "gz", "tgz", "bz2", "xz", "zst", "7z", "rar", "jar", "apk",
+            "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub", "pdf");
+
+    @Value("${storage.zip.deflate-level}")
+    private int deflateLevel;
+
+    @Override
+    public int getLevel(String fileName, String contentType) {
+        return isCompressed(fileName, contentType) ? Deflater.NO_COMPRESSION : deflateLevel;
+    }
+
+    private boolean isCompressed(String fileName, String contentType) {
+        if (contentType != null) {
+            String mediaType = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+
+            if (COMPRESSED_CONTENT_TYPES.contains(mediaType)) {
+                return true;
+            }
+
+            if (!UNCOMPRESSED_AUDIO_CONTENT_TYPES.contains(mediaType)
+                    && COMPRESSED_CONTENT_TYPE_PREFIXES.stream().anyMatch(mediaType::startsWith)) {
+                return true;
+            }
+        }
+
+        int extensionStart = fileName.lastIndexOf('.');
+
+        return extensionStart >= 0
+                && COMPRESSED_EXTENSIONS.contains(fileName.substring(extensionStart + 1).toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,47 @@
+package com.asalavei.cloudfilestorage.storage.zip;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Creates {@link ParallelZipOutputStream}s that share one fork-join pool for compression, sized to the number
+ * of cores unless {@code storage.zip.parallel.parallelism} is set. Compression is CPU-bound, so it does not run
+ * on the virtual threads used for I/O.
+ */
+@Component
+public class ParallelZipFactory {
+
+    private final boolean enabled;
+    private final int chunkSize;
+    private final ForkJoinPool compressionPool;
+
+    public ParallelZipFactory(@Value("${storage.zip.parallel.enabled}") boolean enabled,
+                              @Value("${storage.zip.parallel.chunk-size}") DataSize chunkSize,
+                              @Value("${storage.zip.parallel.parallelism}") int parallelism) {
+        this.enabled = enabled;
+        this.chunkSize = (int) chunkSize.toBytes();
+        this.compressionPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Each archive keeps up to two chunks per core in flight, so its memory use is bounded by
+     * {@code 2 * parallelism * chunk-size}.
+     */
+    public ParallelZipOutputStream create(OutputStream outputStream) {
+        return new ParallelZipOutputStream(outputStream, compressionPool, chunkSize, 2 * compressionPool.getParallelism());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compressionPool.shutdown();
+    }
+}
@@ -0,0 +1,463 @@
+package com.asalavei.cloudfilestorage.storage.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a ZIP archive whose entries are compressed on several threads at once.
+ * <p>
+ * Entry data is cut into chunks that are deflated independently, each primed with the last 32 KB of the chunk
+ * before it, and ended with a sync flush so the compressed chunks concatenate into one deflate stream. Up to
+ * {@code window} chunks are compressed ahead of the one being written, across entry boundaries, while headers
+ * and compressed chunks are written strictly in order.
+ * <p>
+ * Entries are written like {@link java.util.zip.ZipOutputStream} writes them: sizes and CRC follow the data in
+ * a data descriptor, and ZIP64 fields are used only for entries, offsets and counts that exceed the classic limits.
+ * The stream is not thread-safe.
+ */
+public class ParallelZipOutputStream extends OutputStream {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int VERSION = 20;
+    private static final int ZIP64_VERSION = 45;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int METHOD_DEFLATED = 8;
+    private static final short ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int DEFLATE_BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final Executor executor;
+    private final int chunkSize;
+    private final int window;
+    private final int dosTime;
+    private final Deque<PendingWrite> pendingWrites = new ArrayDeque<>();
+    private final List<Entry> entries = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+
+    private Entry currentEntry;
+    private byte[] chunk;
+    private int chunkLength;
+    private byte[] dictionary;
+    private long written;
+    private boolean finished;
+
+    /**
+     * @param chunkSize the number of uncompressed bytes compressed by one task
+     * @param window    the maximum number of chunks compressed ahead of the output
+     */
+    public ParallelZipOutputStream(OutputStream out, Executor executor, int chunkSize, int window) {
+        this.out = out;
+        this.executor = executor;
+        this.chunkSize = Math.max(chunkSize, DICTIONARY_SIZE);
+        this.window = Math.max(window, 1);
+        this.dosTime = toDosTime(LocalDateTime.now());
+    }
+
+    /**
+     * Starts a new entry, closing the current one.
+     *
+     * @param level the {@link Deflater} level of the entry
+     */
+    public void putNextEntry(String name, int level) throws IOException {
+        ensureOpen();
+
+        if (currentEntry != null) {
+            closeEntry();
+        }
+
+        currentEntry = new Entry(name.getBytes(StandardCharsets.UTF_8), level);
+        crc.reset();
+        chunk = new byte[chunkSize];
+        chunkLength = 0;
+        dictionary = null;
+
+        Entry entry = currentEntry;
+        enqueue(CompletableFuture.completedFuture(localHeader(entry)), header -> {
+            entry.localHeaderOffset = written;
+            writeBytes(header);
+        });
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+
+        if (currentEntry == null) {
+            throw new ZipException("No current ZIP entry");
+        }
+
+        crc.update(b, off, len);
+        currentEntry.size += len;
+
+        while (len > 0) {
+            int copied = Math.min(len, chunkSize - chunkLength);
+            System.arraycopy(b, off, chunk, chunkLength, copied);
+            chunkLength += copied;
+            off += copied;
+            len -= copied;
+
+            if (chunkLength == chunkSize) {
+                submitChunk(false);
+            }
+        }
+    }
+
+    public void closeEntry() throws IOException {
+        ensureOpen();
+
+        if (currentEntry == null) {
+            return;
+        }
+
+        submitChunk(true);
+
+        Entry entry = currentEntry;
+        entry.crc = crc.getValue();
+        currentEntry = null;
+        chunk = null;
+        dictionary = null;
+
+        // the compressed size is known only once all chunks of the entry are written
+        enqueue(null, data -> {
+            writeBytes(dataDescriptor(entry));
+            entries.add(entry);
+        });
+    }
+
+    /**
+     * Writes the central directory. The underlying stream is left open.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+
+        try {
+            closeEntry();
+
+            while (!pendingWrites.isEmpty()) {
+                writeNext();
+            }
+
+            writeCentralDirectory();
+            out.flush();
+        } finally {
+            // a failed archive is not finished a second time on close
+            finished = true;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            pendingWrites.forEach(pendingWrite -> {
+                if (pendingWrite.data() != null) {
+                    pendingWrite.data().cancel(false);
+                }
+            });
+            pendingWrites.clear();
+            out.close();
+        }
+    }
+
+    private void submitChunk(boolean last) throws IOException {
+        byte[] data = chunk;
+        int length = chunkLength;
+        byte[] chunkDictionary = dictionary;
+        int level = currentEntry.level;
+
+        if (!last) {
+            dictionary = Arrays.copyOfRange(data, length - DICTIONARY_SIZE, length);
+            chunk = new byte[chunkSize];
+            chunkLength = 0;
+        }
+
+        Entry entry = currentEntry;
+        enqueue(CompletableFuture.supplyAsync(() -> deflate(data, length, chunkDictionary, level, last), executor),
+                compressed -> {
+                    writeBytes(compressed);
+                    entry.compressedSize += compressed.length;
+                });
+    }
+
+    private void enqueue(CompletableFuture<byte[]> data, ChunkWriter writer) throws IOException {
+        pendingWrites.addLast(new PendingWrite(data, writer));
+
+        // writes whatever is ready without waiting, and waits only when the window is full
+        while (!pendingWrites.isEmpty() && (pendingWrites.size() > window || isReady(pendingWrites.getFirst()))) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        PendingWrite pendingWrite = pendingWrites.removeFirst();
+        pendingWrite.writer().write(pendingWrite.data() == null ? null : await(pendingWrite.data()));
+    }
+
+    private static boolean isReady(PendingWrite pendingWrite) {
+        return pendingWrite.data() == null || pendingWrite.data().isDone();
+    }
+
+    private static byte[] await(CompletableFuture<byte[]> data) throws IOException {
+        try {
+            return data.join();
+        } catch (CompletionException e) {
+            throw new IOException("Failed to compress ZIP entry", e.getCause());
+        }
+    }
+
+    /**
+     * Deflates a chunk into a raw deflate segment. All but the last chunk of an entry end with a sync flush,
+     * which aligns the output to a byte boundary without ending the stream.
+     */
+    private static byte[] deflate(byte[] data, int length, byte[] dictionary, int level, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+
+            deflater.setInput(data, 0, length);
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[DEFLATE_BUFFER_SIZE];
+            int deflated;
+
+            if (last) {
+                deflater.finish();
+
+                while (!deflater.finished()) {
+                    deflated = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, deflated);
+                }
+            } else {
+                do {
+                    deflated = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, deflated);
+                } while (deflated == buffer.length);
+            }
+
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] localHeader(Entry entry) {
+        ByteBuffer header = newBuffer(30 + entry.name.length);
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) VERSION);
+        header.putShort((short) (FLAG_DATA_DESCRIPTOR | FLAG_UTF8));
+        header.putShort((short) METHOD_DEFLATED);
+        header.putInt(dosTime);
+        // CRC and sizes follow in the data descriptor
+        header.putInt(0);
+        header.putInt(0);
+        header.putInt(0);
+        header.putShort((short) entry.name.length);
+        header.putShort((short) 0);
+        header.put(entry.name);
+
+        return header.array();
+    }
+
+    private static byte[] dataDescriptor(Entry entry) {
+        boolean zip64 = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+        ByteBuffer descriptor = newBuffer(zip64 ? 24 : 16);
+        descriptor.putInt(DATA_DESCRIPTOR_SIGNATURE);
+        descriptor.putInt((int) entry.crc);
+
+        if (zip64) {
+            descriptor.putLong(entry.compressedSize);
+            descriptor.putLong(entry.size);
+        } else {
+            descriptor.putInt((int) entry.compressedSize);
+            descriptor.putInt((int) entry.size);
+        }
+
+        return descriptor.array();
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long centralDirectoryOffset = written;
+
+        for (Entry entry : entries) {
+            writeBytes(centralHeader(entry));
+        }
+
+        long centralDirectorySize = written - centralDirectoryOffset;
+        boolean zip64 = entries.size() >= ZIP64_MAGIC_COUNT
+                || centralDirectoryOffset >= ZIP64_MAGIC || centralDirectorySize >= ZIP64_MAGIC;
+
+        if (zip64) {
+            long zip64EndOffset = written;
+
+            ByteBuffer zip64End = newBuffer(56 + 20);
+            zip64End.putInt(ZIP64_END_SIGNATURE);
+            zip64End.putLong(44);
+            zip64End.putShort((short) ZIP64_VERSION);
+            zip64End.putShort((short) ZIP64_VERSION);
+            zip64End.putInt(0);
+            zip64End.putInt(0);
+            zip64End.putLong(entries.size());
+            zip64End.putLong(entries.size());
+            zip64End.putLong(centralDirectorySize);
+            zip64End.putLong(centralDirectoryOffset);
+
+            zip64End.putInt(ZIP64_LOCATOR_SIGNATURE);
+            zip64End.putInt(0);
+            zip64End.putLong(zip64EndOffset);
+            zip64End.putInt(1);
+
+            writeBytes(zip64End.array());
+        }
+
+        ByteBuffer end = newBuffer(22);
+        end.putInt(END_SIGNATURE);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+        end.putShort((short) Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+        end.putInt((int) Math.min(centralDirectorySize, ZIP64_MAGIC));
+        end.putInt((int) Math.min(centralDirectoryOffset, ZIP64_MAGIC));
+        end.putShort((short) 0);
+
+        writeBytes(end.array());
+    }
+
+    private byte[] centralHeader(Entry entry) {
+        boolean zip64Size = entry.size >= ZIP64_MAGIC;
+        boolean zip64CompressedSize = entry.compressedSize >= ZIP64_MAGIC;
+        boolean zip64Offset = entry.localHeaderOffset >= ZIP64_MAGIC;
+        int zip64ExtraSize = 8 * ((zip64Size ? 1 : 0) + (zip64CompressedSize ? 1 : 0) + (zip64Offset ? 1 : 0));
+        int extraSize = zip64ExtraSize > 0 ? 4 + zip64ExtraSize : 0;
+        int version = zip64ExtraSize > 0 ? ZIP64_VERSION : VERSION;
+
+        ByteBuffer header = newBuffer(46 + entry.name.length + extraSize);
+        header.putInt(CENTRAL_HEADER_SIGNATURE);
+        header.putShort((short) ZIP64_VERSION);
+        header.putShort((short) version);
+        header.putShort((short) (FLAG_DATA_DESCRIPTOR | FLAG_UTF8));
+        header.putShort((short) METHOD_DEFLATED);
+        header.putInt(dosTime);
+        header.putInt((int) entry.crc);
+        header.putInt((int) (zip64CompressedSize ? ZIP64_MAGIC : entry.compressedSize));
+        header.putInt((int) (zip64Size ? ZIP64_MAGIC : entry.size));
+        header.putShort((short) entry.name.length);
+        header.putShort((short) extraSize);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putInt(0);
+        header.putInt((int) (zip64Offset ? ZIP64_MAGIC : entry.localHeaderOffset));
+        header.put(entry.name);
+
+        if (zip64ExtraSize > 0) {
+            header.putShort(ZIP64_EXTRA_ID);
+            header.putShort((short) zip64ExtraSize);
+
+            if (zip64Size) {
+                header.putLong(entry.size);
+            }
+            if (zip64CompressedSize) {
+                header.putLong(entry.compressedSize);
+            }
+            if (zip64Offset) {
+                header.putLong(entry.localHeaderOffset);
+            }
+        }
+
+        return header.array();
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        out.write(bytes);
+        written += bytes.length;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (finished) {
+            throw new IOException("ZIP stream is already finished");
+        }
+    }
+
+    private static ByteBuffer newBuffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int toDosTime(LocalDateTime time) {
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+                | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+
+    @FunctionalInterface
+    private interface ChunkWriter {
+
+        /**
+         * @param data the completed data, or {@code null} for writes that compute their data when written
+         */
+        void write(byte[] data) throws IOException;
+    }
+
+    private record PendingWrite(CompletableFuture<byte[]> data, ChunkWriter writer) {
+    }
+
+    private static final class Entry {
+
+        private final byte[] name;
+        private final int level;
+        private long localHeaderOffset;
+        private long crc;
+        private long size;
+        private long compressedSize;
+
+        private Entry(byte[] name, int level) {
+            this.name = name;
+            this.level = level;
+        }
+    }
+}
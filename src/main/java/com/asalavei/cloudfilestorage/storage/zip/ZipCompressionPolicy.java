@@ -0,0 +1,14 @@
+package com.asalavei.cloudfilestorage.storage.zip;
+
+/**
+ * Chooses the compression level of each entry of a folder ZIP download.
+ */
+public interface ZipCompressionPolicy {
+
+    /**
+     * @param contentType the content type the object was stored with, or {@code null} if unknown
+     * @return a {@link java.util.zip.Deflater} level, {@link java.util.zip.Deflater#NO_COMPRESSION} for content
+     * that would not get smaller
+     */
+    int getLevel(String fileName, String contentType);
+}
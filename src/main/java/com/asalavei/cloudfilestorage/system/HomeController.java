@@ -2,6 +2,8 @@ package com.asalavei.cloudfilestorage.system;
 
 import com.asalavei.cloudfilestorage.security.UserPrincipal;
 import com.asalavei.cloudfilestorage.storage.FileStorageService;
+import com.asalavei.cloudfilestorage.storage.ObjectPageResponseDto;
+import com.asalavei.cloudfilestorage.storage.usage.StorageUsageService;
 import com.asalavei.cloudfilestorage.util.BreadcrumbsUtil;
 import com.asalavei.cloudfilestorage.validation.constraint.ValidObjectPath;
 import lombok.RequiredArgsConstructor;
@@ -23,12 +25,23 @@ import static com.asalavei.cloudfilestorage.util.PathUtil.DELIMITER;
 public class HomeController {
 
     private final FileStorageService fileStorageService;
+    private final StorageUsageService storageUsageService;
 
     @GetMapping
-    public String homePage(@RequestParam(value = PATH_PARAM, defaultValue = DELIMITER) @ValidObjectPath String path, Model model,
+    public String homePage(@RequestParam(value = PATH_PARAM, defaultValue = DELIMITER) @ValidObjectPath String path,
+                           @RequestParam(value = CURSOR_PARAM, required = false) String cursor, Model model,
                            @AuthenticationPrincipal UserPrincipal userPrincipal) {
+        ObjectPageResponseDto page = fileStorageService.list(userPrincipal.getId(), path, cursor);
+        model.addAttribute(OBJECTS_ATTRIBUTE, page.getObjects());
+        model.addAttribute(NEXT_CURSOR_ATTRIBUTE, page.getNextCursor());
+
+        // "load more" only needs the rows of the next page
+        if (cursor != null) {
+            return HOME_OBJECTS_FRAGMENT;
+        }
+
         model.addAttribute(BREADCRUMBS_ATTRIBUTE, BreadcrumbsUtil.buildBreadcrumbs(path));
-        model.addAttribute(OBJECTS_ATTRIBUTE, fileStorageService.list(userPrincipal.getId(), path));
+        model.addAttribute(USAGE_ATTRIBUTE, storageUsageService.getUsage(userPrincipal.getId()));
         return HOME_VIEW;
     }
 }
@@ -8,12 +8,18 @@ public class Constants {
     public static final String PATH_PARAM = "path";
     public static final String FILES_PARAM = "files";
     public static final String QUERY_PARAM = "query";
+    public static final String CURSOR_PARAM = "cursor";
+    public static final String VERSION_PARAM = "v";
 
     public static final String USER_ATTRIBUTE = "user";
     public static final String OBJECTS_ATTRIBUTE = "objects";
+    public static final String NEXT_CURSOR_ATTRIBUTE = "nextCursor";
     public static final String BREADCRUMBS_ATTRIBUTE = "breadcrumbs";
     public static final String MESSAGE_ATTRIBUTE = "message";
     public static final String ERROR_MESSAGE_ATTRIBUTE = "errorMessage";
+    public static final String UPLOAD_RESULTS_ATTRIBUTE = "uploadResults";
+    public static final String USAGE_ATTRIBUTE = "usage";
+    public static final String JOB_ID_ATTRIBUTE = "jobId";
 
     public static final String HOME_URL = "/";
     public static final String SIGNIN_URL = "/auth/signin";
@@ -27,8 +33,10 @@ public class Constants {
     public static final String SIGNIN_VIEW = "auth/signin";
     public static final String SIGNUP_VIEW = "auth/signup";
     public static final String HOME_VIEW = "home";
+    public static final String HOME_OBJECTS_FRAGMENT = HOME_VIEW + " :: objects";
     public static final String SEARCH_VIEW = "search";
     public static final String ERROR_404_VIEW = "error/404";
+    public static final String ERROR_429_VIEW = "error/429";
     public static final String ERROR_500_VIEW = "error/500";
 
     public static final String SESSION_COOKIE_NAME = "JSESSIONID";
@@ -76,4 +76,11 @@ public class PathUtil {
         String timestamp = LocalDateTime.now(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'"));
         return getFolderName(path) + "-" + timestamp + ".zip";
     }
+
+    /**
+     * @return a SQL {@code LIKE} pattern matching every path that starts with the prefix
+     */
+    public static String toPrefixPattern(String prefix) {
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
 }
@@ -0,0 +1,16 @@
+CREATE TABLE object_metadata
+(
+    id            BIGINT                   NOT NULL GENERATED ALWAYS AS IDENTITY,
+    bucket        VARCHAR(63)              NOT NULL,
+    path          VARCHAR(1024)            NOT NULL,
+    parent_path   VARCHAR(1024)            NOT NULL,
+    size          BIGINT                   NOT NULL,
+    content_type  VARCHAR(255),
+    last_modified TIMESTAMP WITH TIME ZONE NOT NULL,
+    implicit      BOOLEAN                  NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (id),
+    UNIQUE (bucket, path)
+);
+
+CREATE INDEX idx_object_metadata_parent_path ON object_metadata (bucket, parent_path, path);
+CREATE INDEX idx_object_metadata_path_prefix ON object_metadata (bucket, path varchar_pattern_ops);
@@ -0,0 +1,22 @@
+CREATE TABLE blobs
+(
+    id        BIGINT      NOT NULL GENERATED ALWAYS AS IDENTITY,
+    bucket    VARCHAR(63) NOT NULL,
+    hash      VARCHAR(64) NOT NULL,
+    size      BIGINT      NOT NULL,
+    ref_count BIGINT      NOT NULL,
+    PRIMARY KEY (id),
+    UNIQUE (bucket, hash)
+);
+
+CREATE TABLE blob_references
+(
+    id     BIGINT        NOT NULL GENERATED ALWAYS AS IDENTITY,
+    bucket VARCHAR(63)   NOT NULL,
+    path   VARCHAR(1024) NOT NULL,
+    hash   VARCHAR(64)   NOT NULL,
+    PRIMARY KEY (id),
+    UNIQUE (bucket, path)
+);
+
+CREATE INDEX idx_blob_references_path_prefix ON blob_references (bucket, path varchar_pattern_ops);
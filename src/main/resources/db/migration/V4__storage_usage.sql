@@ -0,0 +1,8 @@
+CREATE TABLE storage_usage
+(
+    user_id BIGINT NOT NULL,
+    bytes   BIGINT NOT NULL,
+    objects BIGINT NOT NULL,
+    PRIMARY KEY (user_id),
+    FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
@@ -0,0 +1,10 @@
+-- Takes the oldest job from the queue and leases it, so that a job is always either queued or leased.
+-- KEYS[1] queue, KEYS[2] leases, ARGV[1] lease expiry in epoch ms
+local id = redis.call('RPOP', KEYS[1])
+
+if not id then
+    return false
+end
+
+redis.call('ZADD', KEYS[2], ARGV[1], id)
+return id
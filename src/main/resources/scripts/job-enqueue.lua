@@ -0,0 +1,5 @@
+-- Stores a job and appends it to the queue, so that a stored job is never left unqueued.
+-- KEYS[1] job hash, KEYS[2] queue, ARGV[1] job id, ARGV[2..] job fields and values
+redis.call('HSET', KEYS[1], unpack(ARGV, 2))
+redis.call('LPUSH', KEYS[2], ARGV[1])
+return 1
@@ -0,0 +1,9 @@
+-- Records the outcome of a job unless its lease was lost to another worker.
+-- KEYS[1] leases, KEYS[2] job hash, ARGV[1] job id, ARGV[2] status, ARGV[3] message, ARGV[4] TTL in ms
+if redis.call('ZREM', KEYS[1], ARGV[1]) == 0 then
+    return 0
+end
+
+redis.call('HSET', KEYS[2], 'status', ARGV[2], 'message', ARGV[3])
+redis.call('PEXPIRE', KEYS[2], ARGV[4])
+return 1
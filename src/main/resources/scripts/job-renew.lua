@@ -0,0 +1,8 @@
+-- Extends a lease unless it has expired and the job was queued again.
+-- KEYS[1] leases, ARGV[1] job id, ARGV[2] lease expiry in epoch ms
+if not redis.call('ZSCORE', KEYS[1], ARGV[1]) then
+    return 0
+end
+
+redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])
+return 1
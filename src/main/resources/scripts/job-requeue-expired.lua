@@ -0,0 +1,10 @@
+-- Queues the jobs whose leases have expired again, ahead of the other queued jobs.
+-- KEYS[1] leases, KEYS[2] queue, ARGV[1] current time in epoch ms
+local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1])
+
+for _, id in ipairs(ids) do
+    redis.call('ZREM', KEYS[1], id)
+    redis.call('RPUSH', KEYS[2], id)
+end
+
+return #ids
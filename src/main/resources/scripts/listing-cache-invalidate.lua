@@ -0,0 +1,20 @@
+-- Removes cached listing pages whose field starts with any of the given prefixes and bumps the version,
+-- so that listings read before the invalidation are not stored afterwards.
+-- KEYS[1] user listing hash, ARGV[1] TTL in ms, ARGV[2..] field prefixes
+redis.call('HINCRBY', KEYS[1], '~version', 1)
+
+-- the bump creates the hash if it had expired, so it must expire as well
+if redis.call('PTTL', KEYS[1]) == -1 then
+    redis.call('PEXPIRE', KEYS[1], ARGV[1])
+end
+
+for _, field in ipairs(redis.call('HKEYS', KEYS[1])) do
+    for i = 2, #ARGV do
+        if string.sub(field, 1, #ARGV[i]) == ARGV[i] then
+            redis.call('HDEL', KEYS[1], field)
+            break
+        end
+    end
+end
+
+return 1
@@ -0,0 +1,11 @@
+-- Stores a listing page unless the user's listings were invalidated since the page was read.
+-- KEYS[1] user listing hash, ARGV[1] version read before listing, ARGV[2] field, ARGV[3] page, ARGV[4] TTL in ms
+local version = redis.call('HGET', KEYS[1], '~version') or '0'
+
+if version ~= ARGV[1] then
+    return 0
+end
+
+redis.call('HSET', KEYS[1], ARGV[2], ARGV[3])
+redis.call('PEXPIRE', KEYS[1], ARGV[4])
+return 1
@@ -0,0 +1,27 @@
+-- Takes tokens from a bucket that refills continuously up to its capacity, timed by the Redis clock so that
+-- every node sees the same bucket.
+-- KEYS[1] bucket, ARGV[1] capacity, ARGV[2] refill rate in tokens per second, ARGV[3] tokens to take
+-- Returns 0 if the tokens were taken, otherwise the ms until the bucket holds enough tokens
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local cost = tonumber(ARGV[3])
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'updated')
+local tokens = tonumber(bucket[1]) or capacity
+local updated = tonumber(bucket[2]) or now
+tokens = math.min(capacity, tokens + math.max(0, now - updated) * rate / 1000)
+
+local wait = 0
+
+if tokens >= cost then
+    tokens = tokens - cost
+else
+    wait = math.ceil((cost - tokens) * 1000 / rate)
+end
+
+redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'updated', now)
+-- a bucket left alone until it is full again is the same as no bucket
+redis.call('PEXPIRE', KEYS[1], math.ceil(capacity * 1000 / rate))
+return wait
@@ -0,0 +1,50 @@
+package com.asalavei.cloudfilestorage.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactSessionSerializerTest {
+
+    private final CompactSessionSerializer serializer = new CompactSessionSerializer();
+
+    @Test
+    void serialize_shouldWriteOnlyIdAndUsername_whenValueIsSecurityContextOfUser() {
+        UserPrincipal principal = new UserPrincipal(42L, "alice");
+        SecurityContext context = new SecurityContextImpl(
+                UsernamePasswordAuthenticationToken.authenticated(principal, null, List.of()));
+
+        byte[] bytes = serializer.serialize(context);
+        SecurityContext deserialized = (SecurityContext) serializer.deserialize(bytes);
+
+        assertTrue(bytes.length < 20);
+        assertTrue(deserialized.getAuthentication().isAuthenticated());
+        assertEquals(42L, ((UserPrincipal) deserialized.getAuthentication().getPrincipal()).getId());
+        assertEquals("alice", deserialized.getAuthentication().getName());
+    }
+
+    @Test
+    void deserialize_shouldReturnSameValue_whenValueIsNumberOrString() {
+        assertEquals(1_700_000_000_000L, serializer.deserialize(serializer.serialize(1_700_000_000_000L)));
+        assertEquals(1800, serializer.deserialize(serializer.serialize(1800)));
+        assertEquals("value", serializer.deserialize(serializer.serialize("value")));
+    }
+
+    @Test
+    void deserialize_shouldReturnNull_whenValueWasRemoved() {
+        assertNull(serializer.deserialize(serializer.serialize(null)));
+    }
+
+    @Test
+    void deserialize_shouldReadJdkSerializedValue_whenWrittenBeforeCompactSerializer() {
+        byte[] bytes = new JdkSerializationRedisSerializer().serialize(List.of("flash"));
+
+        assertEquals(List.of("flash"), serializer.deserialize(bytes));
+    }
+}
@@ -0,0 +1,99 @@
+package com.asalavei.cloudfilestorage.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteRangeTest {
+
+    private static final String ETAG = "\"abc\"";
+    private static final Instant LAST_MODIFIED = Instant.parse("2024-05-01T10:15:30.250Z");
+    private static final long SIZE = 1000;
+
+    @Test
+    void of_shouldResolveSingleRange() {
+        ByteRange range = ByteRange.of(rangeHeaders("bytes=100-199"), ETAG, LAST_MODIFIED, SIZE);
+
+        assertEquals(new ByteRange(100, 199, SIZE), range);
+        assertEquals(100, range.length());
+        assertEquals("bytes 100-199/1000", range.contentRange());
+    }
+
+    @Test
+    void of_shouldResolveSuffixRangeToTheEndOfFile() {
+        assertEquals(new ByteRange(900, 999, SIZE), ByteRange.of(rangeHeaders("bytes=-100"), ETAG, LAST_MODIFIED, SIZE));
+    }
+
+    @Test
+    void of_shouldResolveOpenEndedRangeToTheEndOfFile() {
+        assertEquals(new ByteRange(500, 999, SIZE), ByteRange.of(rangeHeaders("bytes=500-"), ETAG, LAST_MODIFIED, SIZE));
+    }
+
+    @Test
+    void of_shouldTruncateRange_whenItEndsAfterTheFile() {
+        assertEquals(new ByteRange(900, 999, SIZE), ByteRange.of(rangeHeaders("bytes=900-5000"), ETAG, LAST_MODIFIED, SIZE));
+    }
+
+    @Test
+    void of_shouldThrow_whenRangeStartsAfterTheFile() {
+        HttpHeaders headers = rangeHeaders("bytes=1000-1100");
+
+        assertThrows(IllegalArgumentException.class, () -> ByteRange.of(headers, ETAG, LAST_MODIFIED, SIZE));
+    }
+
+    @Test
+    void of_shouldReturnNull_whenNoRangeIsRequested() {
+        assertNull(ByteRange.of(new HttpHeaders(), ETAG, LAST_MODIFIED, SIZE));
+    }
+
+    @Test
+    void of_shouldReturnNull_whenMultipleRangesAreRequested() {
+        assertNull(ByteRange.of(rangeHeaders("bytes=0-9,20-29"), ETAG, LAST_MODIFIED, SIZE));
+    }
+
+    @Test
+    void of_shouldReturnNull_whenRangeIsMalformed() {
+        assertNull(ByteRange.of(rangeHeaders("items=0-9"), ETAG, LAST_MODIFIED, SIZE));
+    }
+
+    @Test
+    void of_shouldResolveRange_whenIfRangeMatchesEtag() {
+        HttpHeaders headers = rangeHeaders("bytes=0-9");
+        headers.set(HttpHeaders.IF_RANGE, ETAG);
+
+        assertEquals(new ByteRange(0, 9, SIZE), ByteRange.of(headers, ETAG, LAST_MODIFIED, SIZE));
+    }
+
+    @Test
+    void of_shouldReturnNull_whenIfRangeDoesNotMatchEtag() {
+        HttpHeaders headers = rangeHeaders("bytes=0-9");
+        headers.set(HttpHeaders.IF_RANGE, "\"other\"");
+
+        assertNull(ByteRange.of(headers, ETAG, LAST_MODIFIED, SIZE));
+    }
+
+    @Test
+    void of_shouldResolveRange_whenIfRangeMatchesLastModifiedSecond() {
+        HttpHeaders headers = rangeHeaders("bytes=0-9");
+        headers.setDate(HttpHeaders.IF_RANGE, LAST_MODIFIED.toEpochMilli());
+
+        assertEquals(new ByteRange(0, 9, SIZE), ByteRange.of(headers, ETAG, LAST_MODIFIED, SIZE));
+    }
+
+    @Test
+    void of_shouldReturnNull_whenIfRangeDoesNotMatchLastModified() {
+        HttpHeaders headers = rangeHeaders("bytes=0-9");
+        headers.setDate(HttpHeaders.IF_RANGE, LAST_MODIFIED.minusSeconds(60).toEpochMilli());
+
+        assertNull(ByteRange.of(headers, ETAG, LAST_MODIFIED, SIZE));
+    }
+
+    private static HttpHeaders rangeHeaders(String range) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, range);
+        return headers;
+    }
+}
@@ -0,0 +1,38 @@
+package com.asalavei.cloudfilestorage.storage.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PathTreeTest {
+
+    private static final List<String> PATHS = List.of(
+            "/", "/docs/report.pdf", "/docs/reports/2024.csv", "/docs/reports/2025.csv", "/empty/", "/photos/beach.jpg"
+    );
+
+    @Test
+    void collect_shouldReturnFilesAndEachParentFolderOnce() {
+        List<String> paths = PathTree.build(PATHS).collect(name -> true);
+
+        assertEquals(8, paths.size());
+        assertEquals(Set.of("/docs/", "/docs/report.pdf", "/docs/reports/", "/docs/reports/2024.csv",
+                "/docs/reports/2025.csv", "/empty/", "/photos/", "/photos/beach.jpg"), Set.copyOf(paths));
+    }
+
+    @Test
+    void collect_shouldReturnOnlyMatchingNames_whenFilterIsGiven() {
+        List<String> paths = PathTree.build(PATHS).collect(name -> name.contains("report"));
+
+        assertEquals(Set.of("/docs/report.pdf", "/docs/reports/"), Set.copyOf(paths));
+    }
+
+    @Test
+    void build_shouldMergeFolders_whenPathsAreNotSorted() {
+        List<String> paths = PathTree.build(List.of("/b/x.txt", "/a/y.txt", "/b/z.txt")).collect(name -> true);
+
+        assertEquals(List.of("/a/", "/a/y.txt", "/b/", "/b/x.txt", "/b/z.txt"), paths.stream().sorted().toList());
+    }
+}
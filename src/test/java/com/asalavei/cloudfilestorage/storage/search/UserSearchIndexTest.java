@@ -0,0 +1,83 @@
+package com.asalavei.cloudfilestorage.storage.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserSearchIndexTest {
+
+    private static final List<String> PATHS = List.of(
+            "/docs/", "/docs/report.pdf", "/docs/reports/", "/docs/reports/2024.csv", "/photos/", "/photos/beach.jpg"
+    );
+
+    @Test
+    void search_shouldReturnFilesAndFolders_whenNameContainsQuery() {
+        UserSearchIndex index = UserSearchIndex.build(PATHS);
+
+        assertEquals(Set.of("/docs/report.pdf", "/docs/reports/"), Set.copyOf(index.search("report")));
+    }
+
+    @Test
+    void search_shouldMatchAllNames_whenQueryIsShorterThanGram() {
+        UserSearchIndex index = UserSearchIndex.build(PATHS);
+
+        assertEquals(Set.of("/docs/", "/docs/report.pdf", "/docs/reports/", "/photos/"), Set.copyOf(index.search("o")));
+    }
+
+    @Test
+    void search_shouldReturnEmptyList_whenNoNameContainsQuery() {
+        UserSearchIndex index = UserSearchIndex.build(PATHS);
+
+        assertTrue(index.search("missing").isEmpty());
+    }
+
+    @Test
+    void add_shouldMakePathAndParentFoldersSearchable() {
+        UserSearchIndex index = UserSearchIndex.build(PATHS);
+
+        index.add("/music/albums/track.mp3");
+
+        assertEquals(List.of("/music/albums/track.mp3"), index.search("track"));
+        assertEquals(List.of("/music/albums/"), index.search("albums"));
+    }
+
+    @Test
+    void remove_shouldRemoveFolderContents_whenPathIsFolder() {
+        UserSearchIndex index = UserSearchIndex.build(PATHS);
+
+        index.remove("/docs/reports/");
+
+        assertEquals(List.of("/docs/report.pdf"), index.search("report"));
+        assertTrue(index.search("2024").isEmpty());
+    }
+
+    @Test
+    void rename_shouldMoveFolderContents_whenPathIsFolder() {
+        UserSearchIndex index = UserSearchIndex.build(PATHS);
+
+        index.rename("/photos/", "/pictures/");
+
+        assertTrue(index.search("photos").isEmpty());
+        assertEquals(List.of("/pictures/beach.jpg"), index.search("beach"));
+    }
+
+    @Test
+    void search_shouldReflectUpdates_whenDeltaIsCompacted() {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            paths.add("/folder/file-" + i + ".txt");
+        }
+        UserSearchIndex index = UserSearchIndex.build(List.of("/folder/"));
+
+        paths.forEach(index::add);
+        index.remove("/folder/file-42.txt");
+
+        assertEquals(List.of("/folder/file-2999.txt"), index.search("file-2999"));
+        assertTrue(index.search("file-42.").isEmpty());
+        assertEquals(2999, index.search("file").size());
+    }
+}
@@ -0,0 +1,94 @@
+package com.asalavei.cloudfilestorage.storage.zip;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelZipOutputStreamTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void write_shouldProduceArchiveReadableByZipInputStream_whenEntriesSpanSeveralChunks() throws IOException {
+        Random random = new Random(42);
+        byte[] text = new byte[5 * CHUNK_SIZE + 123];
+        byte[] binary = new byte[3 * CHUNK_SIZE];
+
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) "lorem ipsum ".charAt(random.nextInt(12));
+        }
+        random.nextBytes(binary);
+
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("docs/", new byte[0]);
+        entries.put("docs/notes.txt", text);
+        entries.put("docs/photo.jpg", binary);
+        entries.put("docs/empty.txt", new byte[0]);
+        entries.put("docs/résumé.txt", "hello".getBytes(StandardCharsets.UTF_8));
+
+        Map<String, byte[]> unzipped = unzip(zip(entries));
+
+        assertEquals(entries.keySet(), unzipped.keySet());
+        entries.forEach((name, content) -> assertArrayEquals(content, unzipped.get(name), name));
+    }
+
+    @Test
+    void write_shouldCompressChunksAsOneStream_whenEntryIsCompressible() throws IOException {
+        byte[] text = "all work and no play ".repeat(50_000).getBytes(StandardCharsets.UTF_8);
+
+        byte[] zip = zip(Map.of("text.txt", text));
+
+        assertTrue(zip.length < text.length / 100);
+        assertArrayEquals(text, unzip(zip).get("text.txt"));
+    }
+
+    private byte[] zip(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (ParallelZipOutputStream zipOutputStream = new ParallelZipOutputStream(outputStream, pool, CHUNK_SIZE, 8)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                int level = entry.getKey().endsWith(".jpg") ? Deflater.NO_COMPRESSION : 6;
+
+                zipOutputStream.putNextEntry(entry.getKey(), level);
+                zipOutputStream.write(entry.getValue());
+                zipOutputStream.closeEntry();
+            }
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    private Map<String, byte[]> unzip(byte[] zip) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                entries.put(entry.getName(), zipInputStream.readAllBytes());
+            }
+        }
+
+        return entries;
+    }
+}